@@ -0,0 +1,156 @@
+import java.util.Arrays;
+/**
+ * Scores many boards at once, giving the same scores as NPC.evaluateBoard.
+ * The boards are stored as structure-of-arrays: for every cell there is one array
+ * marking the boards where the player owns it and one for the other player, so the
+ * pieces of a window are counted for all boards with plain additions.
+ * VectorBatchEvaluator scores the same layout with SIMD instructions.
+ *
+ * @author s1808795
+ */
+public final class BatchEvaluator
+{
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int nrRows;
+	private final int nrCols;
+	private final int winCon;
+	private final int player;
+	private final int[] weights;
+	private final int capacity;
+	private final int[][] windows;
+	private final int[][] own;
+	private final int[][] other;
+	private int size;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param player int value representing the player the boards are scored for
+	 * @param weights int[] value representing the score of each window feature
+	 * @param capacity int value representing the maximum number of boards in a batch
+	 */
+	public BatchEvaluator(int nrRows, int nrCols, int winCon, int player, int[] weights, int capacity) {
+		this.nrRows = nrRows;
+		this.nrCols = nrCols;
+		this.winCon = winCon;
+		this.player = player;
+		this.weights = weights.clone();
+		this.capacity = capacity;
+		this.windows = windows(nrRows, nrCols, winCon);
+		this.own = new int[nrRows * nrCols][capacity];
+		this.other = new int[nrRows * nrCols][capacity];
+	}
+	/**
+	 * Lists the cells of every window, in the same order as NPC.countFeatures.
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return int[][] value holding the cell indices, row * nrCols + column, of each window
+	 */
+	public static int[][] windows(int nrRows, int nrCols, int winCon) {
+		int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+		int count = 0;
+		int[][] windows = new int[2 * (nrRows * (nrCols - winCon + 1) + nrCols * (nrRows - winCon + 1))][];
+		for (int[] d : directions) {
+			for (int i = 0; i < nrRows; i++) {
+				for (int j = 0; j < nrCols; j++) {
+					int endRow = i + d[0] * (winCon - 1);
+					int endCol = j + d[1] * (winCon - 1);
+					if (endRow < 0 || endRow >= nrRows || endCol >= nrCols) {
+						continue;
+					}
+					int[] window = new int[winCon];
+					for (int k = 0; k < winCon; k++) {
+						window[k] = (i + d[0] * k) * nrCols + j + d[1] * k;
+					}
+					windows[count++] = window;
+				}
+			}
+		}
+		return Arrays.copyOf(windows, count);
+	}
+	// ==============================================================================
+	// ================================ BATCH INTERFACE =============================
+	// ==============================================================================
+	/**
+	 * Empties the batch.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	/**
+	 * Adds a board to the batch.
+	 * @param board int[][] value representing the board state
+	 * @return int value representing the index of the board in the batch
+	 */
+	public int add(int[][] board) {
+		if (size == capacity) {
+			throw new IllegalStateException("Batch is full");
+		}
+		for (int i = 0; i < nrRows; i++) {
+			for (int j = 0; j < nrCols; j++) {
+				int cell = i * nrCols + j;
+				own[cell][size] = board[i][j] == player ? 1 : 0;
+				other[cell][size] = board[i][j] != player && board[i][j] != 0 ? 1 : 0;
+			}
+		}
+		return size++;
+	}
+	/**
+	 * Scores every board in the batch without SIMD instructions.
+	 * @param scores int[] value the score of each board is written to, in the order they were added
+	 */
+	public void evaluate(int[] scores) {
+		Arrays.fill(scores, 0, size, 0);
+		evaluateRange(scores, 0, size);
+	}
+	/**
+	 * Scores the boards with indices from start up to end.
+	 * A window with o own pieces and t pieces of the other player scores like NPC.calculateScore.
+	 * @param scores int[] value the scores are added to
+	 * @param start int value representing the first board
+	 * @param end int value representing the board after the last one
+	 */
+	void evaluateRange(int[] scores, int start, int end) {
+		int n = winCon;
+		int twoShort = n > 2 ? n - 2 : -1;
+		for (int[] window : windows) {
+			for (int b = start; b < end; b++) {
+				int o = 0;
+				int t = 0;
+				for (int cell : window) {
+					o += own[cell][b];
+					t += other[cell][b];
+				}
+				int score = 0;
+				if (o == n) {
+					score += weights[NPC.CONNECTED];
+				}
+				if (t == 0) {
+					score += o == n - 1 ? weights[NPC.ONE_SHORT] : o == twoShort ? weights[NPC.TWO_SHORT] : 0;
+				}
+				if (o == 0) {
+					score += t == n - 1 ? weights[NPC.OTHER_ONE_SHORT] : t == twoShort ? weights[NPC.OTHER_TWO_SHORT] : 0;
+				}
+				scores[b] += score;
+			}
+		}
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	public int getSize() {return size;}
+	public int getCapacity() {return capacity;}
+	public int getWinCon() {return winCon;}
+	public int[] getWeights() {return weights.clone();}
+	int[][] getWindows() {return windows;}
+	int[][] getOwn() {return own;}
+	int[][] getOther() {return other;}
+}
@@ -1,3 +1,7 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
 /**
  * The main class of the Connect Four game.
  * You should not have to touch this code (except maybe for advanced features).
@@ -11,9 +15,9 @@ public final class ConnectFour
 	 * Model-View-Controller (MVC). The main method instantiates each of these
 	 * components and then starts the game loop.
 	 *
-	 * @param args No arguments expected.
+	 * @param args Optionally, a file that a spectator writes the game events to.
 	 */
-	public static void main(String[] args)
+	public static void main(String[] args) throws FileNotFoundException, InterruptedException
 	{
 		// Creates a model representing the state of the game.
 		Model model = new Model();
@@ -30,7 +34,23 @@ public final class ConnectFour
 		// It also contains the main loop that controls the sequence of events.
 		Controller controller = new Controller(model, view, npc);
 
+		// A spectator follows the game on its own thread, without slowing it down.
+		Spectator spectator = null;
+		PrintStream log = null;
+		if (args.length > 0)
+		{
+			log = new PrintStream(new FileOutputStream(args[0]));
+			spectator = Spectator.start(controller.getGameEvents(), log);
+		}
+
 		// Start a new session.
 		controller.startSession();
+
+		// The session has exited, the spectator prints the last events before the program ends.
+		if (spectator != null)
+		{
+			spectator.stopAndJoin();
+			log.close();
+		}
 	}
 }
@@ -1,19 +1,37 @@
+import java.io.IOException;
+import java.util.OptionalInt;
 /**
  * The Controller of the Connect Four game.
  * Controls the main data flow of the game by manipulating Model and NPC
  * based on upcoming requests from View and updating the View with new Model data.
+ * The game flow is a state machine: every input event moves the session from one
+ * state to the next, so any number of games can be played in one loop.
  *
  * @author s1808795
  */
 public final class Controller
 {
+	/**
+	 * The states of a session. Each state waits for one input event.
+	 */
+	public enum State {
+		START_MENU, SETTINGS_ROWS, SETTINGS_COLUMNS, SETTINGS_WIN_CON, SETTINGS_CLOCK_MINUTES, SETTINGS_CLOCK_INCREMENT,
+		MOVE, IN_GAME_MENU, NEW_GAME_PROMPT, EXIT
+	}
+	/*    constant variable     */
+	public static final int NR_START_COMMANDS = 3;
+	public static final int NR_IN_GAME_COMMANDS = 4;
 	private final Model model;
 	private final TextView view;
 	private final NPC npc;
+	private final InputEvents events;
+	private final GameEventBuffer gameEvents;
+	private final GameArchive archive;
 	/*    field     */
 	private boolean playingNPC;
-	private boolean hasQuit;
-	private boolean isGameOver;
+	private int nrRows;
+	private int nrCols;
+	private int clockMinutes;
 
 	/**
 	 * Constructor
@@ -22,121 +40,255 @@ public final class Controller
 	 * @param npc an object of class NPC containing NPC of the game
 	 */
 	public Controller(Model model, TextView view, NPC npc)	{
+		this(model, view, npc, InputEvents.fromStandardInput());
+	}
+	/**
+	 * Constructor
+	 * @param model an object of class Model containing the state of the game
+	 * @param view an object of class View containing the display methods of the game
+	 * @param npc an object of class NPC containing NPC of the game
+	 * @param events an object of class InputEvents the user input is taken from
+	 */
+	public Controller(Model model, TextView view, NPC npc, InputEvents events)	{
 		this.model = model;
 		this.view = view;
 		this.npc = npc;
+		this.events = events;
+		this.gameEvents = new GameEventBuffer(GameEventBuffer.DEFAULT_CAPACITY);
+		this.archive = GameArchive.openDefault();
 		playingNPC = false;
-		hasQuit = false;
-		isGameOver = false;
 	}
 	/**
-	 * Begins the session
+	 * Begins the session and handles input events until the user quits.
+	 * While a clock is running the wait for input ends when the time runs out, so a player who does
+	 * not move loses without having to enter anything.
 	 */
 	public void startSession() {
-		int move;
-
-		view.displayGameSettingsMessage(model);
-		view.displayStartCommands();
-		processCommand(getCommand(3));
-		isGameOver = model.isGameOver();
-		view.displayBoard(model);
-		view.displayNewGameMessage();
-		while (!isGameOver) {
-			move = getMove();
-			if (move == 0) {
-				view.displayInGameMenuCommands();
-				processCommand(getCommand(4)+3);
-				if (hasQuit) {break;}
+		State state = enter(State.START_MENU);
+		while (state != State.EXIT) {
+			GameClock clock = model.getClock();
+			OptionalInt input;
+			if (clock != null && clock.isRunning()) {
+				input = events.poll(clock.getRemainingMillis(model.getPlayer()) + 1);
 			} else {
-				processPlayerMove(move);
-				view.displayBoard(model);
-				isGameOver = model.isGameOver();
-				getWinner();
-				model.switchPlayer();
-				if (isGameOver) {break;}
-				if (playingNPC) {
-					processNPCMove();
-					view.displayBoard(model);
-					isGameOver = model.isGameOver();
-					getWinner();
-					model.switchPlayer();
+				input = events.take();
+			}
+			if (input == null) {
+				if (clock != null && clock.hasRunOut()) {
+					state = processTimeout();
 				}
+			} else {
+				state = input.isPresent() ? handle(state, input.getAsInt()) : State.EXIT;
 			}
 		}
-		if (model.isBoardFull() && !model.isWinConMet()) { // !model.isWinConMet() as player is switched
-			view.displayBoardFullMessage();
-		}
-		if (!hasQuit) {
-			askForNewGame();
+	}
+	/**
+	 * Shows the user what the state expects from them.
+	 * @param state the state the session moves to
+	 * @return the same state
+	 */
+	public State enter(State state) {
+		switch (state) {
+			case START_MENU:
+				view.displayGameSettingsMessage(model);
+				view.displayStartCommands();
+				view.displayCommandPrompt(model);
+				break;
+			case SETTINGS_ROWS:
+				view.displayRowsPrompt();
+				break;
+			case SETTINGS_COLUMNS:
+				view.displayColumnsPrompt();
+				break;
+			case SETTINGS_WIN_CON:
+				view.displayWinConditionPrompt();
+				break;
+			case SETTINGS_CLOCK_MINUTES:
+				view.displayClockMinutesPrompt();
+				break;
+			case SETTINGS_CLOCK_INCREMENT:
+				view.displayClockIncrementPrompt();
+				break;
+			case MOVE:
+				view.displayInputInstructions(model);
+				view.displayMovePrompt(model);
+				break;
+			case IN_GAME_MENU:
+				view.displayInGameMenuCommands();
+				view.displayCommandPrompt(model);
+				break;
+			case NEW_GAME_PROMPT:
+				view.displayNewGamePrompt();
+				break;
+			case EXIT:
+				break;
 		}
+		return state;
 	}
 	/**
-	 * Gets command from user and makes sure it is valid.
-	 * @param numCommands the number of commands available
-	 * @return a valid command of type int
+	 * Handles one input event.
+	 * @param state the current state of the session
+	 * @param input int value representing the input of the user
+	 * @return the next state of the session
 	 */
-	public int getCommand(int numCommands) {
-		int command = view.askForCommand(model);
-		while (command < 0 || command > numCommands) {
-			view.displayCommandInvalid(command);
-			command = view.askForCommand(model);
+	public State handle(State state, int input) {
+		switch (state) {
+			case START_MENU:
+				return processStartCommand(input);
+			case SETTINGS_ROWS:
+				nrRows = input;
+				return enter(State.SETTINGS_COLUMNS);
+			case SETTINGS_COLUMNS:
+				nrCols = input;
+				return enter(State.SETTINGS_WIN_CON);
+			case SETTINGS_WIN_CON:
+				return processGameSettings(input);
+			case SETTINGS_CLOCK_MINUTES:
+				if (input <= 0) {
+					return processClockSettings(input, 0);
+				}
+				clockMinutes = input;
+				return enter(State.SETTINGS_CLOCK_INCREMENT);
+			case SETTINGS_CLOCK_INCREMENT:
+				return processClockSettings(clockMinutes, input);
+			case MOVE:
+				return input == 0 ? enter(State.IN_GAME_MENU) : processPlayerMove(input);
+			case IN_GAME_MENU:
+				return processInGameCommand(input);
+			case NEW_GAME_PROMPT:
+				if (input == 0) {
+					return newGame();
+				} else if (input == 1) {
+					analyseGame();
+					return enter(State.NEW_GAME_PROMPT);
+				}
+				return State.EXIT;
+			default:
+				return State.EXIT;
 		}
-		return command;
 	}
 	/**
-	 * Performs an action based on the command it gets.
+	 * Performs an action based on a command from the start menu.
 	 * @param command the command the user inputted
+	 * @return the next state of the session
 	 */
-	public void processCommand(int command) {
+	public State processStartCommand(int command) {
 		switch (command){
 			case 0:
-				processGameSettings();
-				break;
+				return enter(State.SETTINGS_ROWS);
 			case 1:
 				if (!model.fileExists()){
 					view.displayFileNotFound();
-					view.displayStartCommands();
-					processCommand(getCommand(3));
 				} else {
 					loadGame();
 				}
-				break;
+				return enter(State.START_MENU);
 			case 2:
 				playingNPC = true;
-				break;
+				return startGame();
 			case 3:
-				break;
-			case 4:
-				model.resetState();
-				startSession();
-				break;
-			case 5:
+				playingNPC = false;
+				return startGame();
+			default:
+				view.displayCommandInvalid(command, NR_START_COMMANDS);
+				view.displayCommandPrompt(model);
+				return State.START_MENU;
+		}
+	}
+	/**
+	 * Performs an action based on a command from the in-game menu.
+	 * @param command the command the user inputted
+	 * @return the next state of the session
+	 */
+	public State processInGameCommand(int command) {
+		switch (command){
+			case 0:
+				return enter(State.MOVE);
+			case 1:
+				return newGame();
+			case 2:
 				saveGame();
-				break;
-			case 6:
+				return enter(State.MOVE);
+			case 3:
 				playerSurrender();
-				isGameOver = true;
-				break;
-			case 7:
-				hasQuit = true;
-				break;
+				return enter(State.NEW_GAME_PROMPT);
+			case 4:
+				return State.EXIT;
+			default:
+				view.displayCommandInvalid(command, NR_IN_GAME_COMMANDS);
+				view.displayCommandPrompt(model);
+				return State.IN_GAME_MENU;
 		}
 	}
 	/**
-	 * Gets and sets new game settings then shows it to the user.
+	 * Sets the new game settings if they are valid, then shows them to the user.
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return the next state of the session
 	 */
-	public void processGameSettings() {
-		int nrRows = view.askForRows();
-		int nrCols = view.askForColumns();
-		int winCon = view.askForWinCondition();
-		while (!model.areSettingsValid(nrRows,nrCols,winCon)) {
+	public State processGameSettings(int winCon) {
+		if (!model.areSettingsValid(nrRows,nrCols,winCon)) {
 			view.displayGameSettingsInvalid();
-			nrRows = view.askForRows();
-			nrCols = view.askForColumns();
-			winCon = view.askForWinCondition();
+			return enter(State.SETTINGS_ROWS);
 		}
 		model.changeGameSettings(nrRows,nrCols,winCon);
-		view.displayGameSettingsMessage(model);
+		return enter(State.SETTINGS_CLOCK_MINUTES);
+	}
+	/**
+	 * Sets up the game clock if the times are valid. A game with 0 minutes is not timed.
+	 * @param minutes int value representing the minutes on each clock
+	 * @param incrementSeconds int value representing the seconds added after each move
+	 * @return the next state of the session
+	 */
+	public State processClockSettings(int minutes, int incrementSeconds) {
+		if (minutes < 0 || incrementSeconds < 0) {
+			view.displayClockSettingsInvalid();
+			return enter(State.SETTINGS_CLOCK_MINUTES);
+		}
+		model.setClock(minutes == 0 ? null : new GameClock(minutes * 60_000L, incrementSeconds * 1000L));
+		return enter(State.START_MENU);
+	}
+	/**
+	 * Starts playing the game in the model.
+	 * @return the next state of the session
+	 */
+	public State startGame() {
+		view.displayBoard(model);
+		if (model.isGameOver()) {
+			return enter(State.NEW_GAME_PROMPT);
+		}
+		view.displayNewGameMessage();
+		gameEvents.publish(GameEventBuffer.NEW_GAME, model.getPlayer(), -1, model.getNrMoves());
+		GameClock clock = model.getClock();
+		if (clock != null) {
+			clock.reset();
+			view.displayClock(clock);
+			clock.start(model.getPlayer());
+		}
+		return enter(State.MOVE);
+	}
+	/**
+	 * Resets the game and returns to the start menu. The clocks are stopped and set back to their starting time.
+	 * @return the next state of the session
+	 */
+	public State newGame() {
+		model.resetState();
+		playingNPC = false;
+		return enter(State.START_MENU);
+	}
+	/**
+	 * Searches every move of the game again and shows the mistakes that were made.
+	 */
+	public void analyseGame() {
+		if (!model.hasFullHistory()) {
+			view.displayNoMoveHistory();
+			return;
+		}
+		GameAnalyzer analyzer = GameAnalyzer.of(model, GameAnalyzer.DEFAULT_DEPTH);
+		if (analyzer == null) {
+			view.displayHistoryMismatch();
+			return;
+		}
+		view.displayAnalysisSummary(analyzer.analyse(view::displayPlyReport));
 	}
 	/**
 	 * Read the state from file and sets it to current state.
@@ -156,62 +308,133 @@ public final class Controller
 	 * Changes the surrender state of the game.
 	 */
 	public void playerSurrender() {
+		if (model.getClock() != null) {
+			model.getClock().stop();
+		}
 		model.hasSurrendered();
 		view.displaySurrenderMessage(model);
+		gameEvents.publish(GameEventBuffer.SURRENDER, model.getPlayer(), -1, model.getNrMoves());
+		archiveGame(otherPlayer());
 	}
 	/**
-	 * Gets a move from the user.
-	 * @return An int value representing the user move.
+	 * Stops the clock of the player to move. A player whose time has run out loses the game.
+	 * @return boolean value representing whether the player moved in time, always true in an untimed game
 	 */
-	public int getMove() {
-		view.displayInputInstructions(model);
-		return view.askForMove(model);
+	public boolean stopClock() {
+		GameClock clock = model.getClock();
+		if (clock == null || clock.stop()) {
+			return true;
+		}
+		model.hasSurrendered();
+		view.displayTimeoutMessage(model);
+		gameEvents.publish(GameEventBuffer.TIMEOUT, model.getPlayer(), -1, model.getNrMoves());
+		archiveGame(otherPlayer());
+		return false;
 	}
 	/**
-	 * Makes sure the move is valid and executes it.
-	 * @param move An int value representing the user move
+	 * Ends the game of the player to move when their time runs out while the session waits for their input.
+	 * @return the next state of the session
 	 */
-	public void processPlayerMove(int move) {
-		move--; // Takes 1 away from move so that move now represents the index of a column.
-		move = playerMoveValidation(move);
-		model.makeMove(move);
+	public State processTimeout() {
+		stopClock();
+		return enter(State.NEW_GAME_PROMPT);
 	}
 	/**
-	 * Makes sure the move is valid.
+	 * Adds the finished game to the archive, if every move of it is known.
+	 * @param winner int value representing the player who won, or GameArchive.DRAW
+	 */
+	public void archiveGame(int winner) {
+		if (archive == null || !model.hasFullHistory()) {
+			return;
+		}
+		try {
+			archive.record(model.getNrRows(), model.getNrCols(), model.getWinCon(), model.getMoveHistory(), winner);
+		} catch (IOException | IllegalArgumentException e) {
+			view.displayArchiveError();
+		}
+	}
+	private int otherPlayer() {
+		return model.getPlayer() == Model.PLAYER_1 ? Model.PLAYER_2 : Model.PLAYER_1;
+	}
+	/**
+	 * Makes the user move if it is valid, followed by the NPC move when playing against the NPC.
 	 * @param move An int value representing the user move
-	 * @return An int value representing a valid user move.
+	 * @return the next state of the session
 	 */
-	public int playerMoveValidation(int move) {
-		while (!model.isMoveValid(move)) {
+	public State processPlayerMove(int move) {
+		move--; // Takes 1 away from move so that move now represents the index of a column.
+		if (!model.isMoveValid(move)) {
 			view.displayMoveInvalid(model, move+1);
-			move = view.askForMove(model);
-			move--;
+			view.displayMovePrompt(model);
+			return State.MOVE;
 		}
-		return move;
+		if (!stopClock()) {
+			return enter(State.NEW_GAME_PROMPT);
+		}
+		model.makeMove(move);
+		if (finishTurn(move)) {
+			return enter(State.NEW_GAME_PROMPT);
+		}
+		if (playingNPC) {
+			int npcMove = processNPCMove();
+			if (npcMove == NPC.RESIGN || finishTurn(npcMove)) {
+				return enter(State.NEW_GAME_PROMPT);
+			}
+		}
+		return enter(State.MOVE);
 	}
 	/**
-	 * Gets and makes NPC move.
+	 * Gets and makes NPC move. The NPC surrenders when every move loses.
+	 * @return int value representing the NPC move, or NPC.RESIGN if it surrendered or ran out of time
 	 */
-	public void processNPCMove() {
-		int move = npc.bestMove(model);
+	public int processNPCMove() {
+		int move = npc.bestMove(model, model.getClock());
+		if (move == NPC.RESIGN) {
+			playerSurrender();
+			return move;
+		}
+		if (!stopClock()) {
+			return NPC.RESIGN;
+		}
 		model.makeMove(move);
 		view.displayNPCMove(move+1);
+		return move;
 	}
 	/**
-	 * Gets the winner.
+	 * Shows the board after a move, announces the result if the game is over and switches player.
+	 * In a timed game the clock of the next player is started.
+	 * The move and result are also published to spectators, and finished games are archived.
+	 * @param move int value representing the column that was played
+	 * @return boolean value representing whether the game is over
 	 */
-	public void getWinner() {
-		if (model.isWinConMet()) {
+	public boolean finishTurn(int move) {
+		int player = model.getPlayer();
+		gameEvents.publish(GameEventBuffer.MOVE, player, move, model.getNrMoves());
+		view.displayBoard(model);
+		boolean isWon = model.isWinConMet();
+		boolean isGameOver = model.isGameOver();
+		if (isWon) {
 			view.displayWinMessage(model);
+			gameEvents.publish(GameEventBuffer.WIN, player, -1, model.getNrMoves());
+			archiveGame(player);
+		} else if (isGameOver) {
+			view.displayBoardFullMessage();
+			gameEvents.publish(GameEventBuffer.BOARD_FULL, player, -1, model.getNrMoves());
+			archiveGame(GameArchive.DRAW);
+		}
+		model.switchPlayer();
+		GameClock clock = model.getClock();
+		if (clock != null && !isGameOver) {
+			view.displayClock(clock);
+			clock.start(model.getPlayer());
 		}
+		return isGameOver;
 	}
 	/**
-	 * Starts a new game if the user want to.
+	 * Gets the buffer the game events are published to, for spectators to subscribe to.
+	 * @return an object of class GameEventBuffer
 	 */
-	public void askForNewGame() {
-		if (view.askForNewGame() == 0) {
-			model.resetState();
-			startSession();
-		}
+	public GameEventBuffer getGameEvents() {
+		return gameEvents;
 	}
 }
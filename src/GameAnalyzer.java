@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+/**
+ * Reviews a finished game by searching every move again, deeper than the NPC does while playing.
+ * Every ply is its own task, run on all cores. Each task does an alpha-beta search for the best move.
+ * If the move played was a different one, the task also scores that move exactly. A whole game
+ * therefore costs one or two root searches per ply, spread over the cores. Each ply's report is
+ * handed out as soon as its task is finished.
+ * Usage: java GameAnalyzer [depth]   (analyses the saved game)
+ *
+ * @author s1808795
+ */
+public final class GameAnalyzer
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final int DEFAULT_DEPTH = 8;
+	public static final int INACCURACY_THRESHOLD = 50;
+	public static final int BLUNDER_THRESHOLD = 150;
+	public static final int GOOD = 0;
+	public static final int INACCURACY = 1;
+	public static final int BLUNDER = 2;
+	public static final int MISSED_WIN = 3;
+	public static final int LOSING_MOVE = 4;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int nrRows;
+	private final int nrCols;
+	private final int winCon;
+	private final int[] moves;
+	private final int depth;
+	private final int[] weights;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param moves int[] value representing the columns played from the empty board
+	 * @param depth int value representing the number of moves to look ahead at every ply
+	 */
+	public GameAnalyzer(int nrRows, int nrCols, int winCon, int[] moves, int depth) {
+		this.nrRows = nrRows;
+		this.nrCols = nrCols;
+		this.winCon = winCon;
+		this.moves = moves.clone();
+		this.depth = depth;
+		this.weights = NPC.loadWeights(NPC.WEIGHTS_FILE);
+	}
+	/**
+	 * Creates an analyzer for the game in the model.
+	 * @param model an object of class Model containing the state of the game
+	 * @param depth int value representing the number of moves to look ahead at every ply
+	 * @return a GameAnalyzer, or null if the move history is not known or does not match the board
+	 */
+	public static GameAnalyzer of(Model model, int depth) {
+		if (!model.historyMatchesBoard()) {
+			return null;
+		}
+		return new GameAnalyzer(model.getNrRows(), model.getNrCols(), model.getWinCon(), model.getMoveHistory(), depth);
+	}
+	// ==============================================================================
+	// ================================ MAIN PROGRAM ================================
+	// ==============================================================================
+	/**
+	 * Analyses the saved game.
+	 * @param args optional search depth
+	 */
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+		Model model = new Model();
+		TextView view = new TextView();
+		if (!model.fileExists()) {
+			view.displayFileNotFound();
+			return;
+		}
+		model.convertStringToState(model.readFromFile());
+		if (!model.hasFullHistory()) {
+			view.displayNoMoveHistory();
+			return;
+		}
+		GameAnalyzer analyzer = of(model, depth);
+		if (analyzer == null) {
+			view.displayHistoryMismatch();
+			return;
+		}
+		view.displayAnalysisSummary(analyzer.analyse(view::displayPlyReport));
+	}
+	// ==========================================================================
+	// ================================ ANALYSIS ================================
+	// ==========================================================================
+	/**
+	 * Searches every ply of the game in parallel, for the best move and for the score of the move played.
+	 * @param onReport called with each ply report as soon as it is finished, on the calling thread
+	 * @return List of PlyReport values, one per ply in the order they were played
+	 */
+	public List<PlyReport> analyse(Consumer<PlyReport> onReport) {
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			CompletionService<PlyReport> done = new ExecutorCompletionService<>(pool);
+			// The longest searches, in the middle of the game, are started first.
+			Integer[] order = new Integer[moves.length];
+			for (int ply = 0; ply < moves.length; ply++) {
+				order[ply] = ply;
+			}
+			Arrays.sort(order, Comparator.comparingInt(ply -> Math.abs(2 * ply - moves.length)));
+			for (int ply : order) {
+				done.submit(() -> analysePly(ply));
+			}
+			List<PlyReport> reports = new ArrayList<>();
+			for (int task = 0; task < moves.length; task++) {
+				PlyReport report = done.take().get();
+				onReport.accept(report);
+				reports.add(report);
+			}
+			reports.sort(Comparator.comparingInt(PlyReport::getPly));
+			return reports;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new ArrayList<>();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Analysis failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	/**
+	 * Replays the game up to a ply, searches it for the best move and scores the move that was played.
+	 * The played move is only searched again when it is not the best move found.
+	 * @param ply int value representing the index of the move in the game
+	 * @return the PlyReport of the move
+	 */
+	public PlyReport analysePly(int ply) {
+		int[][] board = boardAt(ply);
+		// Every task gets its own NPC, so no NPC is searched on two threads at once.
+		NPC npc = new NPC(playerOf(ply), weights, depth, null);
+		int[] best = npc.search(board, winCon, depth);
+		int playedScore = best[0] == moves[ply] ? best[1] : npc.scoreMove(board, winCon, depth, moves[ply]);
+		return report(ply, best, playedScore);
+	}
+	private int[][] boardAt(int ply) {
+		int[][] board = new int[nrRows][nrCols];
+		for (int m = 0; m < ply; m++) {
+			board[NPC.freeRow(board, moves[m])][moves[m]] = playerOf(m);
+		}
+		return board;
+	}
+	/**
+	 * Compares the move played at a ply with the best one. A played move that scores as well as the
+	 * best one is reported as the best.
+	 * @param ply int value representing the index of the move in the game
+	 * @param best int[] value holding the best column at that ply followed by its score
+	 * @param playedScore int value representing the score of the move played at that ply
+	 * @return the PlyReport of the move
+	 */
+	public PlyReport report(int ply, int[] best, int playedScore) {
+		if (playedScore >= best[1]) {
+			return new PlyReport(ply + 1, playerOf(ply), moves[ply], moves[ply], playedScore, playedScore);
+		}
+		return new PlyReport(ply + 1, playerOf(ply), moves[ply], best[0], playedScore, best[1]);
+	}
+	private static int playerOf(int ply) {
+		return ply % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+	}
+	/**
+	 * Checks if a score means a forced win was found.
+	 * @param score int value representing a search score
+	 * @return boolean value representing whether the score is a win
+	 */
+	public static boolean isWin(int score) {
+		return score > NPC.WIN_SCORE / 2;
+	}
+	/**
+	 * Checks if a score means a forced loss was found.
+	 * @param score int value representing a search score
+	 * @return boolean value representing whether the score is a loss
+	 */
+	public static boolean isLoss(int score) {
+		return score < -NPC.WIN_SCORE / 2;
+	}
+	/**
+	 * The review of one move: what was played, what the search prefers and how much worse the move was.
+	 */
+	public static final class PlyReport
+	{
+		private final int ply;
+		private final int player;
+		private final int played;
+		private final int best;
+		private final int playedScore;
+		private final int bestScore;
+		private final int verdict;
+
+		private PlyReport(int ply, int player, int played, int best, int playedScore, int bestScore) {
+			this.ply = ply;
+			this.player = player;
+			this.played = played;
+			this.best = best;
+			this.playedScore = playedScore;
+			this.bestScore = bestScore;
+			if (isWin(bestScore) && !isWin(playedScore)) {
+				verdict = MISSED_WIN;
+			} else if (isLoss(playedScore) && !isLoss(bestScore)) {
+				verdict = LOSING_MOVE;
+			} else if (isWin(bestScore) || isLoss(bestScore) || getSwing() < INACCURACY_THRESHOLD) {
+				verdict = GOOD;
+			} else {
+				verdict = getSwing() >= BLUNDER_THRESHOLD ? BLUNDER : INACCURACY;
+			}
+		}
+		/**
+		 * Gets how much better the best move scored than the move played.
+		 * @return int value representing the score swing
+		 */
+		public int getSwing() {return bestScore - playedScore;}
+		public int getPly() {return ply;}
+		public int getPlayer() {return player;}
+		public int getPlayed() {return played;}
+		public int getBest() {return best;}
+		public int getPlayedScore() {return playedScore;}
+		public int getBestScore() {return bestScore;}
+		public int getVerdict() {return verdict;}
+	}
+}
@@ -0,0 +1,471 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * An archive of finished games with an index of every position they reached.
+ * Games are appended to a record file and never changed; the offset of a record is the id
+ * of the game. The index is a hash table on disk: a memory-mapped array of buckets points
+ * to chains of position entries, one per distinct position, which hold the results of the
+ * games that reached it and the head of a chain of postings, one per game. Finding the games
+ * of a position reads one bucket, a short chain of entries and one posting per game.
+ * The index records how much of the record file it covers, so games appended while the
+ * index was not updated are indexed when the archive is opened again, and an index left
+ * half updated is rebuilt from the records. The archive must only be used by one thread, and
+ * it is locked while it is open, so a second program cannot open it at the same time.
+ * Usage: java GameArchive info
+ *        java GameArchive query rows columns winCon [moves]   (moves as columns from 1, e.g. 4.4.3)
+ *
+ * @author s1808795
+ */
+public final class GameArchive implements Closeable
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final String DEFAULT_DIR = "gameArchive";
+	public static final int DEFAULT_BUCKET_BITS = 20;
+	public static final int MAGIC = 0x43584741; // "CXGA"
+	public static final int VERSION = 1;
+	public static final int DRAW = 0;
+	public static final int MAX_NR_COLS = 256;
+	public static final int FILE_HEADER_LENGTH = 8;
+	public static final int INDEX_HEADER_LENGTH = 32;
+	public static final int RECORD_HEADER_LENGTH = 9;
+	public static final int ENTRY_LENGTH = 36;
+	public static final int POSTING_LENGTH = 16;
+	public static final int NR_QUERY_GAMES = 10;
+	// the archives this program has open, as closing any file of a locked archive would release its lock
+	private static final Set<File> OPEN_DIRS = ConcurrentHashMap.newKeySet();
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final File dir;
+	private final RandomAccessFile games;
+	private final RandomAccessFile positions;
+	private final RandomAccessFile postings;
+	private final RandomAccessFile indexFile;
+	private final MappedByteBuffer index;
+	private final int bucketBits;
+	private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_LENGTH);
+	private final ByteBuffer posting = ByteBuffer.allocate(POSTING_LENGTH);
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Opens the archive in a directory, creating it if needed and bringing the index up to date.
+	 * The archive stays locked until it is closed.
+	 * @param dir the archive directory
+	 * @param bucketBits int value representing the base 2 logarithm of the number of index buckets
+	 * @throws IOException if the archive cannot be read, or another program has it open
+	 */
+	public GameArchive(File dir, int bucketBits) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Cannot create archive directory " + dir);
+		}
+		this.bucketBits = bucketBits;
+		// Record ids and index buckets are handed out by one archive alone, so the files are
+		// locked before they are read, and the lock is released when the index file is closed.
+		this.dir = dir.getCanonicalFile();
+		if (!OPEN_DIRS.add(this.dir)) {
+			throw new IOException("Game archive " + dir + " is already open");
+		}
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(new File(dir, "index.bin"), "rw");
+			if (file.getChannel().tryLock() == null) {
+				throw new IOException("Game archive " + dir + " is in use by another program");
+			}
+			games = openData(new File(dir, "games.bin"));
+			positions = openData(new File(dir, "positions.bin"));
+			postings = openData(new File(dir, "postings.bin"));
+			long length = INDEX_HEADER_LENGTH + (8L << bucketBits);
+			boolean valid = file.length() == length && file.readInt() == MAGIC && file.readInt() == VERSION
+					&& file.readInt() == bucketBits && file.readInt() == 0;
+			if (!valid) {
+				file.setLength(0);
+				file.setLength(length);
+			}
+			index = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+			if (!valid) {
+				// The index is rebuilt from the game records.
+				positions.setLength(FILE_HEADER_LENGTH);
+				postings.setLength(FILE_HEADER_LENGTH);
+				index.putInt(0, MAGIC);
+				index.putInt(4, VERSION);
+				index.putInt(8, bucketBits);
+				index.putLong(16, FILE_HEADER_LENGTH);
+				index.putLong(24, 0);
+			}
+			long id = index.getLong(16);
+			while (id < games.length()) {
+				Game game;
+				try {
+					game = readGame(id);
+				} catch (EOFException e) {
+					games.setLength(id); // the last record was only partly written
+					break;
+				}
+				addToIndex(game);
+				id = game.next;
+			}
+		} catch (IOException | RuntimeException e) {
+			if (file != null) {
+				file.close();
+			}
+			OPEN_DIRS.remove(this.dir);
+			throw e;
+		}
+		indexFile = file;
+	}
+	/**
+	 * Opens the default archive in the working directory.
+	 * @return the GameArchive, or null if it could not be opened
+	 */
+	public static GameArchive openDefault() {
+		try {
+			return new GameArchive(new File(DEFAULT_DIR), DEFAULT_BUCKET_BITS);
+		} catch (IOException e) {
+			System.out.println("Game archive could not be opened (" + e.getMessage() + "), continuing without it.");
+			return null;
+		}
+	}
+	/**
+	 * Opens a data file, writing its header if it is new.
+	 */
+	private static RandomAccessFile openData(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		if (raf.length() < FILE_HEADER_LENGTH) {
+			raf.setLength(0);
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+		} else if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+			raf.close();
+			throw new IOException(file + " is not a game archive file");
+		}
+		return raf;
+	}
+	// ==============================================================================
+	// ================================ MAIN PROGRAM ================================
+	// ==============================================================================
+	/**
+	 * Shows the size of the archive, or the results of the games that reached a position.
+	 * @param args the command and its arguments
+	 */
+	public static void main(String[] args) {
+		boolean query = args.length >= 4 && args.length <= 5 && args[0].equals("query");
+		if (!query && !(args.length == 1 && args[0].equals("info"))) {
+			printUsage();
+			return;
+		}
+		int[][] board = null;
+		int winCon = 0;
+		if (query) {
+			try {
+				int nrRows = Integer.parseInt(args[1]);
+				int nrCols = Integer.parseInt(args[2]);
+				winCon = Integer.parseInt(args[3]);
+				if (!new Model().areSettingsValid(nrRows, nrCols, winCon)) {
+					System.out.println("Invalid game settings.");
+					return;
+				}
+				board = new int[nrRows][nrCols];
+				String[] moves = args.length == 5 ? args[4].split("\\.") : new String[0];
+				for (int m = 0; m < moves.length; m++) {
+					int col = Integer.parseInt(moves[m]) - 1;
+					if (col < 0 || col >= nrCols || board[0][col] != 0) {
+						System.out.printf("Move %d (%s) is not a free column between 1 and %d.\n", m + 1, moves[m],
+								nrCols);
+						printUsage();
+						return;
+					}
+					board[NPC.freeRow(board, col)][col] = m % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+				}
+			} catch (NumberFormatException e) {
+				printUsage();
+				return;
+			}
+		}
+		try (GameArchive archive = new GameArchive(new File(DEFAULT_DIR), DEFAULT_BUCKET_BITS)) {
+			if (!query) {
+				System.out.printf("%d games, %d positions\n", archive.getNrGames(), archive.getNrPositions());
+				return;
+			}
+			long start = System.nanoTime();
+			long key = PositionHash.hash(board, winCon);
+			PositionStats stats = archive.getStats(key);
+			List<Game> reached = new ArrayList<>();
+			for (long id : archive.gamesReaching(key, NR_QUERY_GAMES)) {
+				reached.add(archive.readGame(id));
+			}
+			System.out.printf("Archived games reaching the position: %d (%.2f ms), "
+					+ "player 1 won %d, player 2 won %d, %d draws\n", stats.getNrGames(), (System.nanoTime() - start) / 1e6,
+					stats.getFirstPlayerWins(), stats.getSecondPlayerWins(), stats.getDraws());
+			for (Game game : reached) {
+				System.out.println(game);
+			}
+		} catch (IOException e) {
+			System.out.println("Game archive could not be read: " + e.getMessage());
+		}
+	}
+	private static void printUsage() {
+		System.out.println("Usage: java GameArchive info");
+		System.out.println("       java GameArchive query rows columns winCon [moves]   (moves as columns from 1)");
+	}
+	// ============================================================================
+	// ================================ ARCHIVE ===================================
+	// ============================================================================
+	/**
+	 * Appends a finished game to the archive and indexes every position it reached.
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param moves int[] value representing the columns played from the empty board
+	 * @param winner int value representing the player who won, or DRAW
+	 * @return long value representing the id of the game
+	 */
+	public long record(int nrRows, int nrCols, int winCon, int[] moves, int winner) throws IOException {
+		if (nrCols > MAX_NR_COLS || nrRows > 0xFFFF || moves.length > Math.min(nrRows * nrCols, 0xFFFF)) {
+			throw new IllegalArgumentException("Game cannot be archived: " + nrCols + " columns, " + moves.length
+					+ " moves");
+		}
+		long id = games.length();
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + moves.length);
+		record.putShort((short) nrRows).putShort((short) nrCols).putShort((short) winCon).put((byte) winner)
+				.putShort((short) moves.length);
+		for (int move : moves) {
+			record.put((byte) move);
+		}
+		write(games, record, id);
+		addToIndex(new Game(id, nrRows, nrCols, winCon, moves, winner));
+		return id;
+	}
+	/**
+	 * Reads a game from the archive.
+	 * @param id long value representing the id of the game
+	 * @return the Game
+	 */
+	public Game readGame(long id) throws IOException {
+		ByteBuffer header = read(games, ByteBuffer.allocate(RECORD_HEADER_LENGTH), id);
+		int nrRows = header.getShort(0) & 0xFFFF;
+		int nrCols = header.getShort(2) & 0xFFFF;
+		int winCon = header.getShort(4) & 0xFFFF;
+		int[] moves = new int[header.getShort(7) & 0xFFFF];
+		ByteBuffer columns = read(games, ByteBuffer.allocate(moves.length), id + RECORD_HEADER_LENGTH);
+		for (int m = 0; m < moves.length; m++) {
+			moves[m] = columns.get(m) & 0xFF;
+		}
+		return new Game(id, nrRows, nrCols, winCon, moves, header.get(6));
+	}
+	/**
+	 * Finds the games that reached a position, the most recent first.
+	 * @param key long value representing the position, as PositionHash.hash gives it
+	 * @param limit int value representing the most games to return
+	 * @return List of Long values representing the ids of the games
+	 */
+	public List<Long> gamesReaching(long key, int limit) throws IOException {
+		List<Long> ids = new ArrayList<>();
+		long posting = findEntry(key) == 0 ? 0 : entry.getLong(16);
+		while (posting != 0 && ids.size() < limit) {
+			read(postings, this.posting, posting);
+			ids.add(this.posting.getLong(0));
+			posting = this.posting.getLong(8);
+		}
+		return ids;
+	}
+	/**
+	 * Gets the results of the games that reached a position.
+	 * @param key long value representing the position, as PositionHash.hash gives it
+	 * @return the PositionStats of the position, with no games if it was never reached
+	 */
+	public PositionStats getStats(long key) throws IOException {
+		if (findEntry(key) == 0) {
+			return new PositionStats(0, 0, 0);
+		}
+		return new PositionStats(entry.getInt(24), entry.getInt(28), entry.getInt(32));
+	}
+	/**
+	 * Writes the archive to disk and closes its files.
+	 */
+	@Override
+	public void close() throws IOException {
+		index.force();
+		games.close();
+		positions.close();
+		postings.close();
+		indexFile.close();
+		OPEN_DIRS.remove(dir);
+	}
+	// ==========================================================================
+	// ================================ INDEX ===================================
+	// ==========================================================================
+	/**
+	 * Adds every position of a game to the index. The index is marked as changing while
+	 * this runs, so an index that was left half updated is rebuilt when it is opened.
+	 */
+	private void addToIndex(Game game) throws IOException {
+		index.putInt(12, 1);
+		int[][] board = new int[game.nrRows][game.nrCols];
+		long key = PositionHash.settingsKey(game.nrRows, game.nrCols, game.winCon);
+		addPosting(key, game);
+		for (int m = 0; m < game.moves.length; m++) {
+			int col = game.moves[m];
+			int row = NPC.freeRow(board, col);
+			int piece = m % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+			board[row][col] = piece;
+			key ^= PositionHash.pieceKey(row * game.nrCols + col, piece);
+			addPosting(key, game);
+		}
+		index.putLong(16, game.next);
+		index.putLong(24, index.getLong(24) + 1);
+		index.putInt(12, 0);
+	}
+	/**
+	 * Counts the result of a game for a position and links the game to it.
+	 * The entry is read and written whole, so each posting costs a few file operations.
+	 */
+	private void addPosting(long key, Game game) throws IOException {
+		long offset = findEntry(key);
+		if (offset == 0) {
+			int bucket = bucketOffset(key);
+			offset = positions.length();
+			entry.putLong(0, key).putLong(8, index.getLong(bucket)).putLong(16, 0).putLong(24, 0).putInt(32, 0);
+			index.putLong(bucket, offset);
+		}
+		long postingOffset = postings.length();
+		posting.putLong(0, game.id).putLong(8, entry.getLong(16));
+		write(postings, posting, postingOffset);
+		entry.putLong(16, postingOffset);
+		entry.putInt(24, entry.getInt(24) + 1);
+		if (game.winner != DRAW) {
+			int count = game.winner == Model.PLAYER_1 ? 28 : 32;
+			entry.putInt(count, entry.getInt(count) + 1);
+		}
+		write(positions, entry, offset);
+	}
+	/**
+	 * Follows the chain of a bucket to the entry of a position, leaving the entry in the entry buffer.
+	 * @return long value representing the offset of the entry, or 0 if the position is not indexed
+	 */
+	private long findEntry(long key) throws IOException {
+		long offset = index.getLong(bucketOffset(key));
+		while (offset != 0) {
+			read(positions, entry, offset);
+			if (entry.getLong(0) == key) {
+				return offset;
+			}
+			offset = entry.getLong(8);
+		}
+		return 0;
+	}
+	private int bucketOffset(long key) {
+		return INDEX_HEADER_LENGTH + (int) (key >>> (64 - bucketBits)) * 8;
+	}
+	/**
+	 * Fills a buffer from a file.
+	 * @return the buffer, ready to be read with absolute gets
+	 */
+	private static ByteBuffer read(RandomAccessFile file, ByteBuffer buffer, long offset) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			if (file.getChannel().read(buffer, offset + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer;
+	}
+	/**
+	 * Writes a whole buffer to a file.
+	 */
+	private static void write(RandomAccessFile file, ByteBuffer buffer, long offset) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			file.getChannel().write(buffer, offset + buffer.position());
+		}
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	/**
+	 * Gets the number of games in the archive.
+	 * @return long value representing the number of games
+	 */
+	public long getNrGames() {return index.getLong(24);}
+	/**
+	 * Gets the number of distinct positions in the index.
+	 * @return long value representing the number of positions
+	 */
+	public long getNrPositions() throws IOException {
+		return (positions.length() - FILE_HEADER_LENGTH) / ENTRY_LENGTH;
+	}
+	/**
+	 * A game in the archive: its settings, moves and result.
+	 */
+	public static final class Game
+	{
+		private final long id;
+		private final long next;
+		private final int nrRows;
+		private final int nrCols;
+		private final int winCon;
+		private final int[] moves;
+		private final int winner;
+
+		private Game(long id, int nrRows, int nrCols, int winCon, int[] moves, int winner) {
+			this.id = id;
+			this.next = id + RECORD_HEADER_LENGTH + moves.length;
+			this.nrRows = nrRows;
+			this.nrCols = nrCols;
+			this.winCon = winCon;
+			this.moves = moves;
+			this.winner = winner;
+		}
+		public long getId() {return id;}
+		public int getNrRows() {return nrRows;}
+		public int getNrCols() {return nrCols;}
+		public int getWinCon() {return winCon;}
+		public int[] getMoves() {return moves.clone();}
+		/**
+		 * @return int value representing the player who won, or DRAW
+		 */
+		public int getWinner() {return winner;}
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(String.format("Game %d [%d * %d, Connect %d] ", id, nrRows, nrCols, winCon));
+			text.append(winner == DRAW ? "draw" : "player " + winner + " won").append(':');
+			for (int move : moves) {
+				text.append(' ').append(move + 1);
+			}
+			return text.toString();
+		}
+	}
+	/**
+	 * The results of the games that reached a position.
+	 */
+	public static final class PositionStats
+	{
+		private final int nrGames;
+		private final int firstPlayerWins;
+		private final int secondPlayerWins;
+
+		private PositionStats(int nrGames, int firstPlayerWins, int secondPlayerWins) {
+			this.nrGames = nrGames;
+			this.firstPlayerWins = firstPlayerWins;
+			this.secondPlayerWins = secondPlayerWins;
+		}
+		public int getNrGames() {return nrGames;}
+		public int getFirstPlayerWins() {return firstPlayerWins;}
+		public int getSecondPlayerWins() {return secondPlayerWins;}
+		public int getDraws() {return nrGames - firstPlayerWins - secondPlayerWins;}
+	}
+}
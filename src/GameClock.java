@@ -0,0 +1,101 @@
+/**
+ * The clocks of both players in a timed game.
+ * Each player starts with the same time and gets the increment back after every move they
+ * finish in time, so a clock without increment is a fixed budget for the whole game. Only
+ * the player to move has a running clock. A player whose time runs out loses the game.
+ *
+ * @author s1808795
+ */
+public final class GameClock
+{
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final long totalNanos;
+	private final long incrementNanos;
+	private final long[] remainingNanos = new long[2];
+	private int running;
+	private long turnStart;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param totalMillis long value representing the time each player starts with
+	 * @param incrementMillis long value representing the time added after each move
+	 */
+	public GameClock(long totalMillis, long incrementMillis) {
+		if (totalMillis <= 0 || incrementMillis < 0) {
+			throw new IllegalArgumentException("Invalid clock: " + totalMillis + " ms + " + incrementMillis + " ms");
+		}
+		this.totalNanos = totalMillis * 1_000_000;
+		this.incrementNanos = incrementMillis * 1_000_000;
+		reset();
+	}
+	// ===========================================================================
+	// ================================ CLOCK ====================================
+	// ===========================================================================
+	/**
+	 * Gives both players their starting time back and stops the clocks.
+	 */
+	public void reset() {
+		remainingNanos[0] = totalNanos;
+		remainingNanos[1] = totalNanos;
+		running = 0;
+	}
+	/**
+	 * Starts the clock of a player.
+	 * @param player int value representing the player to move
+	 */
+	public void start(int player) {
+		running = player;
+		turnStart = System.nanoTime();
+	}
+	/**
+	 * Stops the running clock, charging the time of the turn and adding the increment.
+	 * @return boolean value representing whether the player made the move in time
+	 */
+	public boolean stop() {
+		if (running == 0) {
+			return true;
+		}
+		int player = running;
+		remainingNanos[player - 1] -= System.nanoTime() - turnStart;
+		running = 0;
+		if (remainingNanos[player - 1] <= 0) {
+			remainingNanos[player - 1] = 0;
+			return false;
+		}
+		remainingNanos[player - 1] += incrementNanos;
+		return true;
+	}
+	/**
+	 * Gets the time a player has left, including the turn that is running.
+	 * @param player int value representing the player
+	 * @return long value representing the time left in milliseconds, never below 0
+	 */
+	public long getRemainingMillis(int player) {
+		long remaining = remainingNanos[player - 1];
+		if (running == player) {
+			remaining -= System.nanoTime() - turnStart;
+		}
+		return Math.max(0, remaining / 1_000_000);
+	}
+	/**
+	 * Checks if a player's clock is running.
+	 * @return boolean value representing whether a turn is being timed
+	 */
+	public boolean isRunning() {
+		return running != 0;
+	}
+	/**
+	 * Checks if the player whose clock is running has used up their time, before they have moved.
+	 * @return boolean value representing whether the running clock has reached 0
+	 */
+	public boolean hasRunOut() {
+		return running != 0 && remainingNanos[running - 1] - (System.nanoTime() - turnStart) <= 0;
+	}
+	public long getTotalMillis() {return totalNanos / 1_000_000;}
+	public long getIncrementMillis() {return incrementNanos / 1_000_000;}
+}
@@ -0,0 +1,138 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+/**
+ * A preallocated ring buffer the game publishes its events to, for any number of spectators.
+ * There is one writer, the game itself. Every reader keeps its own sequence number and
+ * reads at its own pace. The writer never waits for readers: a reader that falls more than
+ * the capacity behind skips the events that were overwritten and is told how many it missed.
+ * Events are packed into a long, so publishing does not allocate.
+ *
+ * @author s1808795
+ */
+public final class GameEventBuffer
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final int DEFAULT_CAPACITY = 1024;
+	public static final long NO_EVENT = 0;
+	public static final int MOVE = 1;
+	public static final int WIN = 2;
+	public static final int SURRENDER = 3;
+	public static final int BOARD_FULL = 4;
+	public static final int NEW_GAME = 5;
+	public static final int TIMEOUT = 6;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final AtomicLongArray slots;
+	private final AtomicLong published = new AtomicLong();
+	private final int mask;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param capacity int value representing the number of events kept, rounded up to a power of two
+	 */
+	public GameEventBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		slots = new AtomicLongArray(size);
+		mask = size - 1;
+	}
+	// ============================================================================
+	// ================================ PUBLISHING ================================
+	// ============================================================================
+	/**
+	 * Publishes an event. Must only be called from the game thread.
+	 * @param type int value representing the kind of event
+	 * @param player int value representing the player the event is about
+	 * @param column int value representing the column played, or -1
+	 * @param ply int value representing the number of moves made in the game so far
+	 */
+	public void publish(int type, int player, int column, int ply) {
+		long sequence = published.get();
+		slots.set((int) sequence & mask, pack(type, player, column, ply));
+		published.set(sequence + 1);
+	}
+	/**
+	 * Creates a reader that starts with the next event published.
+	 * @return a Reader with its own position in the buffer
+	 */
+	public Reader subscribe() {
+		return new Reader(published.get());
+	}
+	// ========================================================================
+	// ================================ EVENTS ================================
+	// ========================================================================
+	private static long pack(int type, int player, int column, int ply) {
+		return ((long) type << 56) | ((long) (player & 0xFF) << 48) | ((long) (column & 0xFFFF) << 32)
+				| (ply & 0xFFFFFFFFL);
+	}
+	public static int getType(long event) {return (int) (event >>> 56);}
+	public static int getPlayer(long event) {return (int) ((event >>> 48) & 0xFF);}
+	public static int getColumn(long event) {return (short) (event >>> 32);}
+	public static int getPly(long event) {return (int) event;}
+	/**
+	 * Describes an event in words.
+	 * @param event long value representing the event
+	 * @return String value describing the event
+	 */
+	public static String describe(long event) {
+		int player = getPlayer(event);
+		switch (getType(event)) {
+			case MOVE:
+				return String.format("Move %d: player %d plays column %d", getPly(event), player, getColumn(event) + 1);
+			case WIN:
+				return String.format("Player %d wins", player);
+			case SURRENDER:
+				return String.format("Player %d has surrendered", player);
+			case BOARD_FULL:
+				return "The board is full, it is a draw";
+			case NEW_GAME:
+				return "New game started";
+			case TIMEOUT:
+				return String.format("Player %d has run out of time", player);
+			default:
+				return "Unknown event";
+		}
+	}
+	/**
+	 * Reads events from the buffer in the order they were published.
+	 * Each reader must only be used by one thread.
+	 */
+	public final class Reader
+	{
+		private long next;
+		private long missed;
+
+		private Reader(long next) {
+			this.next = next;
+		}
+		/**
+		 * Gets the next event without waiting.
+		 * @return long value representing the event, or NO_EVENT if none has been published yet
+		 */
+		public long poll() {
+			while (true) {
+				long available = published.get();
+				if (next >= available) {
+					return NO_EVENT;
+				}
+				if (available - next > mask) {
+					missed += available - mask - next;
+					next = available - mask;
+				}
+				long event = slots.get((int) next & mask);
+				// The slot is only overwritten once mask + 1 later events were published.
+				if (published.get() - next <= mask) {
+					next++;
+					return event;
+				}
+			}
+		}
+		public long getMissed() {return missed;}
+		public long getLag() {return published.get() - next;}
+	}
+}
@@ -0,0 +1,93 @@
+import java.util.NoSuchElementException;
+import java.util.OptionalInt;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+/**
+ * A queue of integers entered by the user, or posted by any other source of input.
+ * Standard input is read on its own thread, so reading input never holds up the game.
+ * The end of the input is an event of its own, so no integer the user enters can be mistaken for it.
+ *
+ * @author s1808795
+ */
+public final class InputEvents
+{
+	/*    constant variable     */
+	private static final OptionalInt END_OF_INPUT = OptionalInt.empty();
+	/*    field     */
+	private final BlockingQueue<OptionalInt> queue = new LinkedBlockingQueue<>();
+
+	/**
+	 * Constructor
+	 */
+	public InputEvents() {}
+	/**
+	 * Creates a queue that is filled from standard input by a background thread.
+	 * The queue is closed when standard input is closed.
+	 * @return an InputEvents object receiving the integers the user enters
+	 */
+	public static InputEvents fromStandardInput() {
+		InputEvents events = new InputEvents();
+		Thread reader = new Thread(() -> {
+			try {
+				while (true) {
+					events.post(InputUtil.readIntFromUser());
+				}
+			} catch (NoSuchElementException | IllegalStateException e) {
+				events.close();
+			}
+		}, "input-reader");
+		reader.setDaemon(true);
+		reader.start();
+		return events;
+	}
+	/**
+	 * Adds an input event to the queue. Never blocks.
+	 * @param input int value representing the input
+	 */
+	public void post(int input) {
+		queue.add(OptionalInt.of(input));
+	}
+	/**
+	 * Marks the end of the input, after the events already posted. Never blocks.
+	 */
+	public void close() {
+		queue.add(END_OF_INPUT);
+	}
+	/**
+	 * Waits for the next input event.
+	 * @return OptionalInt value holding the input, or empty if the input has ended or the wait was interrupted
+	 */
+	public OptionalInt take() {
+		try {
+			return next(queue.take());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return END_OF_INPUT;
+		}
+	}
+	/**
+	 * Waits a limited time for the next input event.
+	 * @param timeoutMillis long value representing the longest time to wait in milliseconds
+	 * @return OptionalInt value holding the input, empty if the input has ended or the wait was interrupted,
+	 * or null if no input arrived in time
+	 */
+	public OptionalInt poll(long timeoutMillis) {
+		try {
+			OptionalInt input = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+			return input == null ? null : next(input);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return END_OF_INPUT;
+		}
+	}
+	/**
+	 * Leaves the end of the input in the queue once it is reached, so every later wait sees it too.
+	 */
+	private OptionalInt next(OptionalInt input) {
+		if (!input.isPresent()) {
+			queue.add(END_OF_INPUT);
+		}
+		return input;
+	}
+}
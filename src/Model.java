@@ -2,6 +2,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.FileWriter;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.Scanner;
 /**
  * The Model of the Connect Four game.
@@ -28,6 +29,13 @@ public final class Model
 	private int[][] board;
 	private boolean hasSurrendered;
 	private int player;
+	private int nrMoves;
+	private int[] moveHistory;
+	private int historyLength;
+	// null when the game is not timed
+	private GameClock clock;
+	// replaced after every change, so other threads can read the position without locks
+	private volatile PositionSnapshot snapshot;
 
 	// =============================================================================
 	// ================================ CONSTRUCTOR ================================
@@ -39,6 +47,8 @@ public final class Model
 		board = new int[nrRows][nrCols];
 		hasSurrendered = false;
 		player = PLAYER_1;
+		moveHistory = new int[nrRows * nrCols];
+		snapshot = PositionSnapshot.empty(nrRows, nrCols, winCon);
 	}
 	// ====================================================================================
 	// ================================ MODEL INTERACTIONS ================================
@@ -64,6 +74,10 @@ public final class Model
 		this.nrCols = nrCols;
 		board = new int[nrRows][nrCols];
 		this.winCon = winCon;
+		nrMoves = 0;
+		moveHistory = new int[nrRows * nrCols];
+		historyLength = 0;
+		snapshot = PositionSnapshot.empty(nrRows, nrCols, winCon).withPlayer(player);
 	}
 	/**
 	 * Input validation for user move.
@@ -74,7 +88,7 @@ public final class Model
 		return move < nrCols && move > -1 && board[0][move] == 0;
 	}
 	/**
-	 * Makes move for the current player.
+	 * Makes move for the current player. The snapshot published for the move already has the other player to move.
 	 * @param move int value representing user move
 	 */
 	public void makeMove(int move) {
@@ -83,6 +97,9 @@ public final class Model
 			row--;
 		}
 		board[row][move] = player;
+		nrMoves++;
+		moveHistory[historyLength++] = move;
+		snapshot = snapshot.afterMove(row, move, player);
 	}
 	/**
 	 * Switches to the next player.
@@ -96,6 +113,10 @@ public final class Model
 				player = PLAYER_1;
 				break;
 		}
+		// After a move the snapshot already has this player to move, and is not published twice.
+		if (snapshot.getPlayer() != player) {
+			snapshot = snapshot.withPlayer(player);
+		}
 	}
 	/**
 	 * checks if the game is over.
@@ -109,6 +130,7 @@ public final class Model
 	 */
 	public void hasSurrendered(){
 		hasSurrendered = true;
+		snapshot = snapshot.withSurrender();
 	}
 	/**
 	 * Checks if the board is full.
@@ -174,7 +196,7 @@ public final class Model
 			}
 		}
 		// positive slope diagonal check
-		for (int i = 3; i < nrRows; i++) {
+		for (int i = winCon-1; i < nrRows; i++) {
 			for (int j = 0; j < nrCols-(winCon-1); j++) {
 				int counter = 0;
 				for (int k = 0; k <winCon; k++) {
@@ -192,7 +214,8 @@ public final class Model
 		return false;
 	}
 	/**
-	 * Resets the state of the board to default values.
+	 * Resets the state of the board to default values. A timed game keeps its clock, with the starting time
+	 * given back to both players.
 	 */
 	public void resetState() {
 		nrRows = DEFAULT_NR_ROWS;
@@ -201,6 +224,20 @@ public final class Model
 		board = new int[nrRows][nrCols];
 		hasSurrendered = false;
 		player = PLAYER_1;
+		nrMoves = 0;
+		moveHistory = new int[nrRows * nrCols];
+		historyLength = 0;
+		snapshot = PositionSnapshot.empty(nrRows, nrCols, winCon);
+		if (clock != null) {
+			clock.reset();
+		}
+	}
+	/**
+	 * Sets the clocks the game is played with.
+	 * @param clock an object of class GameClock, or null for an untimed game
+	 */
+	public void setClock(GameClock clock) {
+		this.clock = clock;
 	}
 	/**
 	 * Converts the state of the game to a string.
@@ -219,6 +256,16 @@ public final class Model
 		sb.append(nrCols).append("-");
 		sb.append(winCon).append("-");
 		sb.append(player);
+		//convert move history, when it is known from the first move
+		if (historyLength > 0 && hasFullHistory()) {
+			sb.append("-");
+			for (int m = 0; m < historyLength; m++) {
+				if (m > 0) {
+					sb.append(".");
+				}
+				sb.append(moveHistory[m]);
+			}
+		}
 		return sb;
 	}
 	/**
@@ -232,14 +279,83 @@ public final class Model
 		nrCols = Integer.parseInt(stateSections[2]);
 		winCon = Integer.parseInt(stateSections[3]);
 		player = Integer.parseInt(stateSections[4]);
+		this.board = new int[nrRows][nrCols];
+		moveHistory = new int[nrRows * nrCols];
+		historyLength = stateSections.length > 5 ? readHistory(stateSections[5]) : 0;
 
 		int k = 0;
+		nrMoves = 0;
 		for (int i = 0; i < nrRows; i++) {
 			for (int j = 0; j < nrCols; j++) {
 				this.board[i][j] = Integer.parseInt(board.charAt(k)+"");
+				if (this.board[i][j] != 0) {
+					nrMoves++;
+				}
 				k++;
 			}
 		}
+		snapshot = snapshotFromState();
+	}
+	/**
+	 * Reads the saved moves into the move history. A hand-edited save may hold more moves than the
+	 * board has cells or columns that are not on the board, and then the history is left out.
+	 * @param history String value representing the columns played, separated by dots
+	 * @return int value representing the number of moves read, or 0 if the history is not valid
+	 */
+	private int readHistory(String history) {
+		String[] moves = history.split("\\.");
+		if (moves.length > moveHistory.length) {
+			return 0;
+		}
+		try {
+			for (int m = 0; m < moves.length; m++) {
+				moveHistory[m] = Integer.parseInt(moves[m]);
+				if (moveHistory[m] < 0 || moveHistory[m] >= nrCols) {
+					return 0;
+				}
+			}
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+		return moves.length;
+	}
+	/**
+	 * Rebuilds the snapshots of a loaded game, replaying the moves when they match the board.
+	 * @return the PositionSnapshot of the loaded position
+	 */
+	private PositionSnapshot snapshotFromState() {
+		if (!historyMatchesBoard()) {
+			return PositionSnapshot.of(board, winCon, player);
+		}
+		PositionSnapshot replay = PositionSnapshot.empty(nrRows, nrCols, winCon);
+		int[] heights = new int[nrCols];
+		for (int m = 0; m < historyLength; m++) {
+			int col = moveHistory[m];
+			int row = nrRows - 1 - heights[col]++;
+			replay = replay.afterMove(row, col, board[row][col]);
+		}
+		return replay.withPlayer(player);
+	}
+	/**
+	 * Checks if the move history replays onto the board, which a hand-edited save may not do.
+	 * @return boolean value representing whether every move is known and lands on a piece of the player who made it
+	 */
+	public boolean historyMatchesBoard() {
+		if (!hasFullHistory()) {
+			return false;
+		}
+		int[] heights = new int[nrCols];
+		for (int m = 0; m < historyLength; m++) {
+			int col = moveHistory[m];
+			if (col < 0 || col >= nrCols || heights[col] == nrRows) {
+				return false;
+			}
+			int row = nrRows - 1 - heights[col]++;
+			if (board[row][col] != (m % 2 == 0 ? PLAYER_1 : PLAYER_2)) {
+				return false;
+			}
+		}
+		return true;
 	}
 	/**
 	 * Writes the state of the game to a file.
@@ -262,7 +378,7 @@ public final class Model
 	 * @return boolean value representing whether a file exists
 	 */
 	public boolean fileExists() {
-		File file = new File(System.getProperty("user.dir") + "\\gameState.txt");
+		File file = new File(System.getProperty("user.dir"), "gameState.txt");
 		if (file.exists()) {return true;}
 		return false;
 	}
@@ -292,5 +408,22 @@ public final class Model
 	public int getNrCols() {return nrCols;}
 	public int getWinCon() {return winCon;}
 	public int[][] getBoard() {return board;}
+	/**
+	 * Gets the latest snapshot of the position, which is safe to read from any thread.
+	 * @return the PositionSnapshot published after the last change
+	 */
+	public PositionSnapshot getSnapshot() {return snapshot;}
 	public int getPlayer() {return player;}
+	/**
+	 * Gets the clocks the game is played with.
+	 * @return an object of class GameClock, or null if the game is not timed
+	 */
+	public GameClock getClock() {return clock;}
+	public int getNrMoves() {return nrMoves;}
+	public int[] getMoveHistory() {return Arrays.copyOf(moveHistory, historyLength);}
+	/**
+	 * Checks if every move of the game was recorded, which is not the case for games saved without a history.
+	 * @return boolean value representing whether the move history starts from the empty board
+	 */
+	public boolean hasFullHistory() {return historyLength == nrMoves;}
 }
@@ -1,3 +1,6 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
 /**
  * The NPC of the Connect Four game
  * Calculates the next best move to be made by NPC
@@ -7,42 +10,389 @@
 public final class NPC {
     /*    constant variable     */
     public static final int NPC_PLAYER = 2;
+    public static final String WEIGHTS_FILE = "npcWeights.txt";
+    public static final int DEFAULT_SEARCH_DEPTH = 6;
+    public static final long DEFAULT_PROOF_MEMORY = 4L << 20;
+    public static final int WIN_SCORE = 1000000;
+    public static final int NO_MOVE = Integer.MIN_VALUE;
+    public static final int RESIGN = -1;
+    public static final int NR_FEATURES = 5;
+    public static final int CONNECTED = 0;
+    public static final int ONE_SHORT = 1;
+    public static final int TWO_SHORT = 2;
+    public static final int OTHER_ONE_SHORT = 3;
+    public static final int OTHER_TWO_SHORT = 4;
+    public static final int[] DEFAULT_WEIGHTS = {100, 50, 10, -90, -40};
+    public static final int STABLE_ITERATIONS = 3;
+    public static final int BRANCHING_FACTOR = 4;
+    public static final int MAX_MOVE_SHARE = 3;
     /*    field     */
-    private final int player = NPC_PLAYER;
+    private final int player;
+    private final int otherPlayer;
+    private final int[] weights;
+    private final int searchDepth;
+    private final PositionCache cache;
+    private final long proofMemory;
+    private ProofNumberSearch proofSearch;
+    private final long configKey;
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
     /**
      * constructor
      */
-    public NPC() {}
+    public NPC() {
+        this(NPC_PLAYER, loadWeights(WEIGHTS_FILE), DEFAULT_SEARCH_DEPTH, PositionCache.openDefault(),
+                DEFAULT_PROOF_MEMORY);
+    }
+    /**
+     * constructor
+     * @param player int value representing the player the NPC plays as
+     * @param weights int[] value representing the score of each window feature
+     */
+    public NPC(int player, int[] weights) {
+        this(player, weights, DEFAULT_SEARCH_DEPTH, null);
+    }
+    /**
+     * constructor
+     * @param player int value representing the player the NPC plays as
+     * @param weights int[] value representing the score of each window feature
+     * @param searchDepth int value representing the number of moves the NPC looks ahead
+     * @param cache a PositionCache the search results are kept in, or null for no cache
+     */
+    public NPC(int player, int[] weights, int searchDepth, PositionCache cache) {
+        this(player, weights, searchDepth, cache, 0);
+    }
+    /**
+     * constructor
+     * @param player int value representing the player the NPC plays as
+     * @param weights int[] value representing the score of each window feature
+     * @param searchDepth int value representing the number of moves the NPC looks ahead
+     * @param cache a PositionCache the search results are kept in, or null for no cache
+     * @param proofMemory long value representing the bytes the forced win search may use, or 0 to skip it
+     */
+    public NPC(int player, int[] weights, int searchDepth, PositionCache cache, long proofMemory) {
+        if (weights.length != NR_FEATURES) {
+            throw new IllegalArgumentException("Expected " + NR_FEATURES + " weights, got " + weights.length);
+        }
+        if (searchDepth < 1) {
+            throw new IllegalArgumentException("Search depth must be at least 1, got " + searchDepth);
+        }
+        this.player = player;
+        this.otherPlayer = player == Model.PLAYER_1 ? Model.PLAYER_2 : Model.PLAYER_1;
+        this.weights = weights.clone();
+        this.searchDepth = searchDepth;
+        this.cache = cache;
+        this.proofMemory = proofMemory;
+        long key = PositionHash.mix(player);
+        for (int weight : weights) {
+            key = PositionHash.mix(key ^ weight);
+        }
+        this.configKey = key;
+    }
+    /**
+     * Reads the evaluation weights from a file, falling back to the default weights.
+     * @param fileName String value representing the name of the weights file
+     * @return int[] value representing the score of each window feature
+     */
+    public static int[] loadWeights(String fileName) {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return DEFAULT_WEIGHTS.clone();
+        }
+        int[] weights = new int[NR_FEATURES];
+        try (Scanner scanner = new Scanner(file)) {
+            for (int i = 0; i < NR_FEATURES; i++) {
+                if (!scanner.hasNextInt()) {
+                    System.out.println("Weights file is incomplete, using default weights.");
+                    return DEFAULT_WEIGHTS.clone();
+                }
+                weights[i] = scanner.nextInt();
+            }
+        } catch (FileNotFoundException e) {
+            return DEFAULT_WEIGHTS.clone();
+        }
+        return weights;
+    }
     /**
      * Calculates the best move for the NPC.
+     * Wins, forced blocks and lost positions are found before searching.
      * @param model an object of class Model containing the state of the game
-     * @return int value representing the NPC move
+     * @return int value representing the NPC move, or RESIGN if every move loses at once
      */
     public int bestMove(Model model){
-        int nrRows = model.getNrRows();
-        int nrCols = model.getNrCols();
+        return bestMove(model, null);
+    }
+    /**
+     * Calculates the best move for the NPC, searching as deep as the time on its clock allows.
+     * Wins, forced blocks and lost positions are found before searching.
+     * @param model an object of class Model containing the state of the game
+     * @param clock the GameClock of the game, or null to search to the search depth
+     * @return int value representing the NPC move, or RESIGN if every move loses at once
+     */
+    public int bestMove(Model model, GameClock clock){
         int winCon = model.getWinCon();
-        int[][] boardCopy;
-        int value = -10000;
-        int score;
-        int column = 0;
-
-        for (int j = 0; j< nrCols; j++){
-            boardCopy = makeCopy(model);
-            if (boardCopy[0][j] == 0){
-                int row = nrRows-1;
-                while (boardCopy[row][j] != 0){
-                    row--;
-                }
-                boardCopy[row][j] = player;
-                score = evaluateBoard(nrRows,nrCols,boardCopy,winCon);
-                if (score > value){
-                    value = score;
-                    column = j;
+        int[][] boardCopy = makeCopy(model);
+        Tactics tactics = Tactics.of(boardCopy, winCon, player);
+        if (tactics.getWinningMove() >= 0) {
+            return tactics.getWinningMove();
+        } else if (tactics.isLost()) {
+            return RESIGN;
+        } else if (tactics.getForcedMove() >= 0) {
+            return tactics.getForcedMove();
+        }
+        int[] solved = SolutionBook.lookup(boardCopy, winCon);
+        if (solved != null && solved[0] != Solver.LOSS && model.isMoveValid(solved[1])) {
+            return solved[1];
+        }
+        long key = PositionHash.hash(boardCopy, winCon) ^ configKey;
+        // Moves on wider boards do not fit in a cache entry.
+        boolean useCache = cache != null && model.getNrCols() <= PositionCache.MAX_NR_COLS;
+        if (useCache) {
+            long cached = cache.get(key, searchDepth);
+            if (cached != 0 && model.isMoveValid(PositionCache.getMove(cached))) {
+                return PositionCache.getMove(cached);
+            }
+        }
+        // The time spent proving a win counts against the move, so a timed search is budgeted from here.
+        long start = System.nanoTime();
+        // A proven forced win is played ahead of the heuristic search.
+        if (proofMemory > 0) {
+            // The tree is allocated on the first move and reused by every later one.
+            if (proofSearch == null) {
+                proofSearch = ProofNumberSearch.withMemory(proofMemory);
+            }
+            int win = proofSearch.findForcedWin(boardCopy, winCon, player);
+            if (win != ProofNumberSearch.NOT_PROVEN) {
+                if (useCache) {
+                    cache.put(key, win, WIN_SCORE, searchDepth);
                 }
+                return win;
+            }
+        }
+        int[] result;
+        if (clock == null) {
+            int[] found = search(boardCopy, winCon, searchDepth, tactics);
+            result = new int[] {found[0], found[1], searchDepth};
+        } else {
+            result = searchTimed(boardCopy, winCon, tactics, clock, start);
+        }
+        if (useCache && result[2] > 0) {
+            cache.put(key, result[0], result[1], result[2]);
+        }
+        return result[0];
+    }
+    /**
+     * Searches one move deeper at a time until the time for the move is used up.
+     * The time for a move is an equal share of the time left over the moves still to come.
+     * Searching stops sooner when the best move has not changed for STABLE_ITERATIONS depths,
+     * and goes on longer while it keeps changing. A position with one safe move is not searched.
+     * @param board int[][] value representing the board state, restored when the search returns
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @param tactics the Tactics of the position
+     * @param clock the GameClock of the game
+     * @param start long value representing the System.nanoTime the move was started at, so the time
+     * spent before the search is charged to the move
+     * @return int[] value holding the best move, its score and the depth of the last finished search
+     */
+    public int[] searchTimed(int[][] board, int winCon, Tactics tactics, GameClock clock, long start) {
+        int nrRows = board.length;
+        int nrCols = board[0].length;
+        int nrSafe = 0;
+        int firstSafe = -1;
+        int nrEmpty = 0;
+        for (int j = 0; j < nrCols; j++) {
+            if (tactics.isSafe(j)) {
+                nrSafe++;
+                firstSafe = firstSafe < 0 ? j : firstSafe;
+            }
+            nrEmpty += freeRow(board, j) + 1;
+        }
+        if (nrSafe <= 1) {
+            return new int[] {firstSafe, 0, 0};
+        }
+        // The time left when the move was started, which the budget of the move is a share of.
+        long remaining = clock.getRemainingMillis(player) * 1_000_000 + System.nanoTime() - start;
+        long target = remaining / Math.max(1, (nrEmpty + 1) / 2) + clock.getIncrementMillis() * 750_000;
+        // The opening moves are much alike, so the time is saved for the middlegame.
+        if (nrRows * nrCols - nrEmpty < nrCols) {
+            target /= 2;
+        }
+        int[] best = null;
+        int stable = 0;
+        for (int depth = 1; depth <= nrEmpty; depth++) {
+            // The first search always finishes, so there is a move to play.
+            deadline = depth == 1 ? 0 : start + Math.max(1, Math.min(target * 2, remaining / MAX_MOVE_SHARE));
+            long iterationStart = System.nanoTime();
+            int[] result = search(board, winCon, depth, tactics);
+            if (stopped) {
+                break;
+            }
+            stable = best != null && best[0] == result[0] ? stable + 1 : 0;
+            best = new int[] {result[0], result[1], depth};
+            if (Math.abs(result[1]) > WIN_SCORE / 2) {
+                break;
+            }
+            long now = System.nanoTime();
+            long limit = stable >= STABLE_ITERATIONS ? target / 2 : stable == 0 && depth > 1 ? target * 2 : target;
+            if (now - start + (now - iterationStart) * BRANCHING_FACTOR > limit) {
+                break;
+            }
+        }
+        deadline = 0;
+        stopped = false;
+        return best;
+    }
+    /**
+     * Searches the moves of the NPC with minimax and alpha-beta pruning.
+     * @param board int[][] value representing the board state, restored when the search returns
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @param depth int value representing the number of moves to look ahead
+     * @return int[] value holding the best move followed by its score
+     */
+    public int[] search(int[][] board, int winCon, int depth) {
+        return search(board, winCon, depth, null);
+    }
+    /**
+     * Searches the moves of the NPC that the tactics allow, with minimax and alpha-beta pruning.
+     * @param board int[][] value representing the board state, restored when the search returns
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @param depth int value representing the number of moves to look ahead
+     * @param tactics the Tactics of the position, or null to search every move
+     * @return int[] value holding the best move followed by its score
+     */
+    public int[] search(int[][] board, int winCon, int depth, Tactics tactics) {
+        int nrCols = board[0].length;
+        int[] order = columnOrder(nrCols);
+        int value = -WIN_SCORE * 2;
+        int column = -1;
+
+        for (int j : order) {
+            int row = freeRow(board, j);
+            if (row < 0 || (tactics != null && !tactics.isSafe(j))) {
+                continue;
+            }
+            board[row][j] = player;
+            int score;
+            if (isWinningMove(board, row, j, winCon)) {
+                score = WIN_SCORE + depth;
+            } else {
+                score = minimax(board, winCon, depth - 1, value, WIN_SCORE * 2, false, order);
+            }
+            board[row][j] = 0;
+            if (score > value){
+                value = score;
+                column = j;
+            }
+        }
+        return new int[] {column, value};
+    }
+    /**
+     * Scores every move of the NPC exactly, without cutting off moves that are worse than the best one.
+     * @param board int[][] value representing the board state, restored when the search returns
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @param depth int value representing the number of moves to look ahead
+     * @return int[] value holding the score of each column, or NO_MOVE for full columns
+     */
+    public int[] scoreMoves(int[][] board, int winCon, int depth) {
+        int[] scores = new int[board[0].length];
+        for (int j = 0; j < scores.length; j++) {
+            scores[j] = scoreMove(board, winCon, depth, j);
+        }
+        return scores;
+    }
+    /**
+     * Scores one move of the NPC exactly.
+     * @param board int[][] value representing the board state, restored when the search returns
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @param depth int value representing the number of moves to look ahead
+     * @param col int value representing the column to play
+     * @return int value representing the score of the move, or NO_MOVE if the column is full
+     */
+    public int scoreMove(int[][] board, int winCon, int depth, int col) {
+        int row = freeRow(board, col);
+        if (row < 0) {
+            return NO_MOVE;
+        }
+        int score;
+        board[row][col] = player;
+        if (isWinningMove(board, row, col, winCon)) {
+            score = WIN_SCORE + depth;
+        } else {
+            score = minimax(board, winCon, depth - 1, -WIN_SCORE * 2, WIN_SCORE * 2, false, columnOrder(board[0].length));
+        }
+        board[row][col] = 0;
+        return score;
+    }
+    /**
+     * Scores a position by looking ahead, from the point of view of the NPC.
+     * Wins found sooner get higher scores, so the NPC wins as fast and loses as slow as it can.
+     */
+    private int minimax(int[][] board, int winCon, int depth, int alpha, int beta, boolean maximizing, int[] order) {
+        nodes++;
+        if (deadline != 0 && (nodes & 1023) == 0 && System.nanoTime() - deadline > 0) {
+            stopped = true;
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (depth == 0) {
+            return evaluateBoard(board.length, board[0].length, board, winCon);
+        }
+        int piece = maximizing ? player : otherPlayer;
+        boolean hasMove = false;
+        for (int j : order) {
+            int row = freeRow(board, j);
+            if (row < 0) {
+                continue;
+            }
+            hasMove = true;
+            board[row][j] = piece;
+            int score;
+            if (isWinningMove(board, row, j, winCon)) {
+                score = maximizing ? WIN_SCORE + depth : -WIN_SCORE - depth;
+            } else {
+                score = minimax(board, winCon, depth - 1, alpha, beta, !maximizing, order);
+            }
+            board[row][j] = 0;
+            if (maximizing) {
+                alpha = Math.max(alpha, score);
+            } else {
+                beta = Math.min(beta, score);
+            }
+            if (alpha >= beta) {
+                break;
             }
         }
-        return column;
+        if (!hasMove) {
+            return 0;
+        }
+        return maximizing ? alpha : beta;
+    }
+    /**
+     * Gets the columns ordered from the centre outwards, as central moves are usually better.
+     * @param nrCols int value representing the number of columns
+     * @return int[] value representing the columns in the order they are searched
+     */
+    public static int[] columnOrder(int nrCols) {
+        int[] order = new int[nrCols];
+        for (int i = 0; i < nrCols; i++) {
+            order[i] = nrCols / 2 + (i % 2 == 0 ? i / 2 : -(i + 1) / 2);
+        }
+        return order;
+    }
+    /**
+     * Gets the row a piece dropped in the column lands in.
+     * @param board int[][] value representing the board state
+     * @param col int value representing the column
+     * @return int value representing the row, or -1 if the column is full
+     */
+    public static int freeRow(int[][] board, int col) {
+        int row = board.length - 1;
+        while (row >= 0 && board[row][col] != 0) {
+            row--;
+        }
+        return row;
     }
     /**
      * Gives the board a score.
@@ -53,15 +403,32 @@ public final class NPC {
      * @return int value representing the score of the board
      */
     public int evaluateBoard(int nrRows, int nrCols, int[][] board, int winCon){
+        int[] features = countFeatures(nrRows, nrCols, board, winCon);
         int score = 0;
+        for (int f = 0; f < NR_FEATURES; f++) {
+            score += weights[f] * features[f];
+        }
+        return score;
+    }
+    /**
+     * Counts how often each window feature occurs on the board.
+     * The board score is the sum of these counts multiplied by the weights.
+     * @param nrRows int value representing the number of rows
+     * @param nrCols int value representing the number of columns
+     * @param board  int[][] value representing the board state
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @return int[] value representing the count of each window feature
+     */
+    public int[] countFeatures(int nrRows, int nrCols, int[][] board, int winCon){
+        int[] features = new int[NR_FEATURES];
         int[] window = new int[winCon];
         // get 1*4 window horizontal
         for (int i = 0; i < nrRows; i++){
             for (int j = 0; j < nrCols-(winCon-1); j++){
                 for (int k = 0; k < winCon; k++){
                     window[k] = board[i][j+k];
-                    score += calculateScore(window);
                 }
+                addWindowFeatures(window, features);
             }
         }
         // get 4*1 window vertical
@@ -69,8 +436,8 @@ public final class NPC {
             for (int i = 0; i < nrRows-(winCon-1); i++){
                 for (int k = 0; k < winCon; k++){
                     window[k] = board[i+k][j];
-                    score += calculateScore(window);
                 }
+                addWindowFeatures(window, features);
             }
         }
         // negative slope diagonal check
@@ -78,34 +445,45 @@ public final class NPC {
             for (int j = 0; j < nrCols -(winCon-1); j++) {
                 for (int k = 0; k < winCon; k++) {
                     window[k] = board[i+k][j+k];
-                    score += calculateScore(window);
-
                 }
+                addWindowFeatures(window, features);
             }
         }
         // positive slope diagonal check
-        for (int i = 3; i < nrRows; i++){
+        for (int i = winCon-1; i < nrRows; i++){
             for (int j = 0; j < nrCols-(winCon-1); j++){
                 for (int k = 0; k < winCon; k++) {
                     window[k] = board[i-k][j+k];
-                    score += calculateScore(window);
-
                 }
+                addWindowFeatures(window, features);
             }
         }
-        return score;
+        return features;
     }
     /**
-     * Calculates the score of a four piece section.
-     * @param window int[] value representing four pieces
-     * @return int value representing the score of the four pieces
+     * Calculates the score of a winCon piece section.
+     * @param window int[] value representing winCon pieces
+     * @return int value representing the score of the pieces
      */
     public int calculateScore(int[] window) {
+        int[] features = new int[NR_FEATURES];
+        addWindowFeatures(window, features);
         int score = 0;
+        for (int f = 0; f < NR_FEATURES; f++) {
+            score += weights[f] * features[f];
+        }
+        return score;
+    }
+    /**
+     * Adds the features found in a window to the feature counts.
+     * @param window int[] value representing winCon pieces
+     * @param features int[] value representing the count of each window feature
+     */
+    private void addWindowFeatures(int[] window, int[] features) {
+        int size = window.length;
         int emptyCounter = 0;
         int playerCounter = 0;
         int otherPlayerCounter = 0;
-        int otherPlayer = 1;
 
         for (int piece: window) {
             if (piece == player) {
@@ -116,37 +494,70 @@ public final class NPC {
                 otherPlayerCounter++;
             }
         }
-        if (playerCounter == 4) {
-            score += 100;
-        } else if (playerCounter == 3 && emptyCounter == 1) {
-            score += 50;
-        } else if (playerCounter == 2 && emptyCounter == 2) {
-            score += 10;
+        if (playerCounter == size) {
+            features[CONNECTED]++;
+        } else if (playerCounter == size-1 && emptyCounter == 1) {
+            features[ONE_SHORT]++;
+        } else if (size > 2 && playerCounter == size-2 && emptyCounter == 2) {
+            features[TWO_SHORT]++;
         }
-        if (otherPlayerCounter == 3 && emptyCounter == 1) {
-            score -= 90;
-        } else if (otherPlayerCounter == 2 && emptyCounter == 2) {
-            score -= 40;
+        if (otherPlayerCounter == size-1 && emptyCounter == 1) {
+            features[OTHER_ONE_SHORT]++;
+        } else if (size > 2 && otherPlayerCounter == size-2 && emptyCounter == 2) {
+            features[OTHER_TWO_SHORT]++;
         }
-
-        return score;
+    }
+    /**
+     * Checks if the piece at the given cell completes a line of winCon pieces.
+     * Only the four lines through the cell are checked.
+     * @param board int[][] value representing the board state
+     * @param row int value representing the row of the piece
+     * @param col int value representing the column of the piece
+     * @param winCon int value representing the number of pieces to connect for a win
+     * @return boolean value representing whether the piece wins the game
+     */
+    public static boolean isWinningMove(int[][] board, int row, int col, int winCon) {
+        int piece = board[row][col];
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+        for (int[] d : directions) {
+            int counter = 1;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int i = row + sign * d[0];
+                int j = col + sign * d[1];
+                while (i >= 0 && i < board.length && j >= 0 && j < board[i].length && board[i][j] == piece) {
+                    counter++;
+                    i += sign * d[0];
+                    j += sign * d[1];
+                }
+            }
+            if (counter >= winCon) {
+                return true;
+            }
+        }
+        return false;
     }
     /**
      * Makes a deep copy of the board state from model
+     * The copy is taken from the latest snapshot, so it is consistent even while the model changes.
      * @param model an object of class Model containing the state of the game
      * @return int[][] value representing a copy of the board state of the game
      */
     public int[][] makeCopy(Model model) {
-        int[][] board = model.getBoard();
-        int nrRows = model.getNrRows();
-        int nrCols = model.getNrCols();
-        int[][] boardCopy = new int[nrRows][nrCols];
-
-        for (int i = 0; i <nrRows; i++) {
-            for (int j = 0; j < nrCols; j++) {
-                boardCopy[i][j] = board[i][j];
-            }
-        }
-        return boardCopy;
+        return model.getSnapshot().toBoard();
     }
+    /**
+     * Gets the number of positions searched since the count was last reset.
+     * An NPC searching on several threads at once does not count reliably.
+     * @return long value representing the number of positions searched
+     */
+    public long getNodes() {return nodes;}
+    /**
+     * Sets the number of positions searched back to zero.
+     */
+    public void resetNodes() {nodes = 0;}
+    /*    getters     */
+    public int getPlayer() {return player;}
+    public int[] getWeights() {return weights.clone();}
+    public int getSearchDepth() {return searchDepth;}
+    public PositionCache getCache() {return cache;}
 }
@@ -0,0 +1,186 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+/**
+ * A fixed-size cache of search results, kept in a memory-mapped file so that it
+ * survives restarts of the program.
+ * Entries are grouped in buckets of BUCKET_SIZE. When a bucket is full, the entry
+ * that has gone unused for the most runs, and then the one searched least deep, is replaced.
+ * Every entry stores a check value computed from its key and data, so entries that
+ * were only partly written when the program stopped are ignored.
+ * Moves are stored in 16 bits, so boards with more than MAX_NR_COLS columns are not cached.
+ *
+ * @author s1808795
+ */
+public final class PositionCache
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final String DEFAULT_FILE = "npcCache.bin";
+	public static final int DEFAULT_NR_ENTRIES = 1 << 18;
+	public static final int BUCKET_SIZE = 4;
+	public static final int ENTRY_LENGTH = 24;
+	public static final int HEADER_LENGTH = 16;
+	public static final int MAGIC = 0x43584343; // "CXCC"
+	public static final int VERSION = 2;
+	public static final int MAX_NR_COLS = 0xFFFE;
+	private static final long CHECK_SALT = 0x5DEECE66DL;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final MappedByteBuffer buffer;
+	private final int nrBuckets;
+	private final int generation;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Opens the cache file, creating or resetting it if it does not hold a cache of the given size.
+	 * @param file the cache file
+	 * @param nrEntries int value representing the number of entries, rounded up to whole buckets
+	 */
+	public PositionCache(File file, int nrEntries) throws IOException {
+		nrBuckets = Math.max(1, (nrEntries + BUCKET_SIZE - 1) / BUCKET_SIZE);
+		long length = HEADER_LENGTH + (long) nrBuckets * BUCKET_SIZE * ENTRY_LENGTH;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			boolean valid = raf.length() == length && raf.readInt() == MAGIC && raf.readInt() == VERSION
+					&& raf.readInt() == nrBuckets;
+			if (!valid) {
+				raf.setLength(0);
+				raf.setLength(length);
+			}
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		}
+		int previous = buffer.getInt(0) == MAGIC ? buffer.getInt(12) : 0;
+		generation = (previous + 1) & 0xFF;
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, nrBuckets);
+		buffer.putInt(12, generation);
+	}
+	/**
+	 * Opens the default cache file in the working directory.
+	 * @return the PositionCache, or null if the file could not be opened
+	 */
+	public static PositionCache openDefault() {
+		try {
+			return new PositionCache(new File(DEFAULT_FILE), DEFAULT_NR_ENTRIES);
+		} catch (IOException e) {
+			System.out.println("NPC cache could not be opened, continuing without it.");
+			return null;
+		}
+	}
+	// ================================================================================
+	// ================================ CACHE INTERFACE ===============================
+	// ================================================================================
+	/**
+	 * Looks up a search result.
+	 * @param key long value representing the position and search configuration
+	 * @param depth int value representing the depth the result must at least have been searched to
+	 * @return long value holding the result, to be read with getMove and getScore, or 0 if there is none
+	 */
+	public long get(long key, int depth) {
+		int bucket = bucketOffset(key);
+		for (int e = 0; e < BUCKET_SIZE; e++) {
+			int offset = bucket + e * ENTRY_LENGTH;
+			long data = readEntry(offset, key);
+			if (data != 0 && depthOf(data) >= depth) {
+				if (generationOf(data) != generation) {
+					writeEntry(offset, key, withGeneration(data, generation));
+				}
+				return data;
+			}
+		}
+		return 0;
+	}
+	/**
+	 * Stores a search result, replacing a shallower result for the same position or the least useful entry.
+	 * @param key long value representing the position and search configuration
+	 * @param move int value representing the best move
+	 * @param score int value representing the score of the best move
+	 * @param depth int value representing the depth that was searched
+	 */
+	public void put(long key, int move, int score, int depth) {
+		if (move < -1 || move >= MAX_NR_COLS) {
+			throw new IllegalArgumentException("Move " + move + " does not fit in a cache entry");
+		}
+		long data = pack(move, score, depth, generation);
+		int bucket = bucketOffset(key);
+		int victim = -1;
+		long victimRank = Long.MAX_VALUE;
+		for (int e = 0; e < BUCKET_SIZE; e++) {
+			int offset = bucket + e * ENTRY_LENGTH;
+			long old = readEntry(offset, buffer.getLong(offset));
+			if (old == 0) {
+				victimRank = -1;
+				victim = offset;
+				continue;
+			}
+			if (buffer.getLong(offset) == key) {
+				if (depthOf(old) <= depth) {
+					writeEntry(offset, key, data);
+				}
+				return;
+			}
+			// Entries not used for the most runs go first, then the shallowest.
+			long age = (generation - generationOf(old)) & 0xFF;
+			long rank = ((0xFF - age) << 8) | depthOf(old);
+			if (rank < victimRank) {
+				victimRank = rank;
+				victim = offset;
+			}
+		}
+		writeEntry(victim, key, data);
+	}
+	/**
+	 * Writes the cache to disk.
+	 */
+	public void flush() {
+		buffer.force();
+	}
+	// ========================================================================
+	// ================================ ENTRIES ===============================
+	// ========================================================================
+	// move + 1 in bits 48-63, depth in bits 40-47, generation in bits 32-39 and the score in bits 0-31
+	public static int getMove(long data) {return (int) ((data >>> 48) & 0xFFFF) - 1;}
+	public static int getScore(long data) {return (int) data;}
+	private static int depthOf(long data) {return (int) ((data >>> 40) & 0xFF);}
+	private static int generationOf(long data) {return (int) ((data >>> 32) & 0xFF);}
+
+	private static long pack(int move, int score, int depth, int generation) {
+		return ((long) (move + 1) << 48) | ((long) Math.min(depth, 0xFF) << 40)
+				| ((long) generation << 32) | (score & 0xFFFFFFFFL);
+	}
+	private static long withGeneration(long data, int generation) {
+		return (data & ~(0xFFL << 32)) | ((long) generation << 32);
+	}
+	private int bucketOffset(long key) {
+		return HEADER_LENGTH + (int) Long.remainderUnsigned(key, nrBuckets) * BUCKET_SIZE * ENTRY_LENGTH;
+	}
+	/**
+	 * Reads the data of an entry if it holds the key and was written completely.
+	 */
+	private long readEntry(int offset, long key) {
+		long storedKey = buffer.getLong(offset);
+		long data = buffer.getLong(offset + 8);
+		long check = buffer.getLong(offset + 16);
+		if (storedKey != key || data == 0 || check != PositionHash.mix(key ^ data ^ CHECK_SALT)) {
+			return 0;
+		}
+		return data;
+	}
+	private void writeEntry(int offset, long key, long data) {
+		buffer.putLong(offset, key);
+		buffer.putLong(offset + 8, data);
+		buffer.putLong(offset + 16, PositionHash.mix(key ^ data ^ CHECK_SALT));
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	public int getNrEntries() {return nrBuckets * BUCKET_SIZE;}
+	public int getGeneration() {return generation;}
+}
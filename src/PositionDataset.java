@@ -0,0 +1,514 @@
+import java.io.Closeable;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+/**
+ * A large set of positions stored in a compressed, chunked binary file.
+ * The file starts with a header holding the game settings, followed by chunks that
+ * each hold a number of positions and are compressed on their own. Every position is
+ * stored as its cells packed 2 bits each, followed by the result of the game for the NPC.
+ * Because the chunks are independent, the file can be generated and read in parallel.
+ * Usage: java PositionDataset generate file random|self-play|enumerated count [rows columns winCon]
+ *        java PositionDataset info file
+ *
+ * @author s1808795
+ */
+public final class PositionDataset
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final int MAGIC = 0x43585044; // "CXPD"
+	public static final int VERSION = 1;
+	public static final int HEADER_LENGTH = 20;
+	public static final int CHUNK_HEADER_LENGTH = 8;
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+	public static final int RESULT_UNKNOWN = 3;
+	public static final int MODE_RANDOM = 0;
+	public static final int MODE_SELF_PLAY = 1;
+	public static final int MODE_ENUMERATED = 2;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final File file;
+	private final int nrRows;
+	private final int nrCols;
+	private final int winCon;
+	private final long[] chunkOffsets;
+	private final int[] chunkSizes;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	private PositionDataset(File file, int nrRows, int nrCols, int winCon, long[] chunkOffsets, int[] chunkSizes) {
+		this.file = file;
+		this.nrRows = nrRows;
+		this.nrCols = nrCols;
+		this.winCon = winCon;
+		this.chunkOffsets = chunkOffsets;
+		this.chunkSizes = chunkSizes;
+	}
+	// ==============================================================================
+	// ================================ MAIN PROGRAM ================================
+	// ==============================================================================
+	/**
+	 * Generates a dataset or prints information about one.
+	 * @param args the command followed by its arguments
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length >= 4 && args[0].equals("generate")) {
+			int mode = parseMode(args[2]);
+			long count = Long.parseLong(args[3]);
+			int nrRows = args.length > 6 ? Integer.parseInt(args[4]) : Model.DEFAULT_NR_ROWS;
+			int nrCols = args.length > 6 ? Integer.parseInt(args[5]) : Model.DEFAULT_NR_COLS;
+			int winCon = args.length > 6 ? Integer.parseInt(args[6]) : Model.DEFAULT_WIN_CON;
+			if (mode < 0 || !new Model().areSettingsValid(nrRows, nrCols, winCon)) {
+				System.out.println("Invalid mode or game settings.");
+				return;
+			}
+			long start = System.nanoTime();
+			long written = generate(new File(args[1]), mode, count, nrRows, nrCols, winCon, DEFAULT_CHUNK_SIZE);
+			System.out.printf("Wrote %d positions in %.1f s.\n", written, (System.nanoTime() - start) / 1e9);
+		} else if (args.length == 2 && args[0].equals("info")) {
+			PositionDataset dataset = open(new File(args[1]));
+			long[] results = new long[RESULT_UNKNOWN + 1];
+			for (Reader reader : dataset.split(Runtime.getRuntime().availableProcessors())) {
+				try (reader) {
+					while (reader.next()) {
+						results[reader.getResult()]++;
+					}
+				}
+			}
+			System.out.printf("[Board size = %d * %d, Connect %d] %d positions in %d chunks\n", dataset.getNrRows(),
+					dataset.getNrCols(), dataset.getWinCon(), dataset.getNrPositions(), dataset.getNrChunks());
+			System.out.printf("Results for player %d: %d losses, %d draws, %d wins, %d unknown\n", NPC.NPC_PLAYER,
+					results[WeightTuner.LOSS], results[WeightTuner.DRAW], results[WeightTuner.WIN], results[RESULT_UNKNOWN]);
+		} else {
+			System.out.println("Usage: java PositionDataset generate file random|self-play|enumerated count [rows columns winCon]");
+			System.out.println("       java PositionDataset info file");
+		}
+	}
+	/**
+	 * Gets the generation mode from its name.
+	 * @param name String value representing the name of the mode
+	 * @return int value representing the mode, or -1 if the name is unknown
+	 */
+	public static int parseMode(String name) {
+		switch (name) {
+			case "random":
+				return MODE_RANDOM;
+			case "self-play":
+				return MODE_SELF_PLAY;
+			case "enumerated":
+				return MODE_ENUMERATED;
+			default:
+				return -1;
+		}
+	}
+	// ============================================================================
+	// ================================ GENERATION ================================
+	// ============================================================================
+	/**
+	 * Generates positions in parallel and writes them to a dataset file.
+	 * Random and self-play chunks are generated independently from their own seed.
+	 * Enumerated positions are all distinct positions in order of the number of
+	 * pieces played, until count positions are found or no more positions exist.
+	 * @param file the file to write to
+	 * @param mode int value representing how the positions are generated
+	 * @param count long value representing the number of positions to generate
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param chunkSize int value representing the number of positions per chunk
+	 * @return long value representing the number of positions written
+	 */
+	public static long generate(File file, int mode, long count, int nrRows, int nrCols, int winCon, int chunkSize)
+			throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nrRows);
+			out.writeInt(nrCols);
+			out.writeInt(winCon);
+			if (mode == MODE_ENUMERATED) {
+				return generateEnumerated(out, count, nrRows, nrCols, winCon, chunkSize);
+			}
+			int[] weights = NPC.loadWeights(NPC.WEIGHTS_FILE);
+			long nrChunks = (count + chunkSize - 1) / chunkSize;
+			int batch = 2 * Runtime.getRuntime().availableProcessors();
+			for (long first = 0; first < nrChunks; first += batch) {
+				long firstChunk = first;
+				List<byte[]> chunks = IntStream.range(0, (int) Math.min(batch, nrChunks - first)).parallel()
+						.mapToObj(c -> {
+							long chunk = firstChunk + c;
+							int size = (int) Math.min(chunkSize, count - chunk * chunkSize);
+							byte[][] positions = mode == MODE_RANDOM
+									? randomPositions(chunk, size, nrRows, nrCols, winCon)
+									: selfPlayPositions(chunk, size, nrRows, nrCols, winCon, weights);
+							return compressChunk(positions);
+						})
+						.collect(Collectors.toList());
+				for (byte[] chunk : chunks) {
+					out.write(chunk);
+				}
+			}
+			return count;
+		}
+	}
+	/**
+	 * Writes every distinct position reachable without a win, one ply at a time.
+	 * Only the current and the next ply are kept in memory.
+	 */
+	private static long generateEnumerated(DataOutputStream out, long count, int nrRows, int nrCols, int winCon,
+			int chunkSize) throws IOException {
+		List<byte[]> level = new ArrayList<>();
+		level.add(encode(new int[nrRows][nrCols], RESULT_UNKNOWN));
+		long written = 0;
+		while (!level.isEmpty() && written < count) {
+			int size = (int) Math.min(level.size(), count - written);
+			for (int from = 0; from < size; from += chunkSize) {
+				List<byte[]> chunk = level.subList(from, Math.min(size, from + chunkSize));
+				out.write(compressChunk(chunk.toArray(new byte[0][])));
+			}
+			written += size;
+			if (written < count) {
+				level = level.parallelStream()
+						.flatMap(record -> expand(record, nrRows, nrCols, winCon).stream())
+						.map(ByteBuffer::wrap)
+						.distinct()
+						.map(ByteBuffer::array)
+						.collect(Collectors.toList());
+			}
+		}
+		return written;
+	}
+	/**
+	 * Gets every position one legal, non-winning move after the given one.
+	 */
+	private static List<byte[]> expand(byte[] record, int nrRows, int nrCols, int winCon) {
+		int[][] board = new int[nrRows][nrCols];
+		decode(record, board);
+		int player = playerToMove(board);
+		List<byte[]> children = new ArrayList<>();
+		for (int j = 0; j < nrCols; j++) {
+			int row = nrRows - 1;
+			while (row >= 0 && board[row][j] != 0) {
+				row--;
+			}
+			if (row < 0) {
+				continue;
+			}
+			board[row][j] = player;
+			if (!NPC.isWinningMove(board, row, j, winCon)) {
+				children.add(encode(board, RESULT_UNKNOWN));
+			}
+			board[row][j] = 0;
+		}
+		return children;
+	}
+	/**
+	 * Plays random moves from the empty board, stopping before any move that wins.
+	 */
+	private static byte[][] randomPositions(long chunk, int size, int nrRows, int nrCols, int winCon) {
+		Random random = new Random(chunk);
+		byte[][] positions = new byte[size][];
+		int[][] board = new int[nrRows][nrCols];
+		int[] heights = new int[nrCols];
+		for (int p = 0; p < size; p++) {
+			for (int[] row : board) {
+				Arrays.fill(row, 0);
+			}
+			Arrays.fill(heights, 0);
+			int plies = random.nextInt(nrRows * nrCols);
+			int player = Model.PLAYER_1;
+			for (int ply = 0; ply < plies; ply++) {
+				int col = random.nextInt(nrCols);
+				if (heights[col] == nrRows) {
+					continue;
+				}
+				int row = nrRows - 1 - heights[col];
+				board[row][col] = player;
+				if (NPC.isWinningMove(board, row, col, winCon)) {
+					board[row][col] = 0;
+					break;
+				}
+				heights[col]++;
+				player = player == Model.PLAYER_1 ? Model.PLAYER_2 : Model.PLAYER_1;
+			}
+			positions[p] = encode(board, RESULT_UNKNOWN);
+		}
+		return positions;
+	}
+	/**
+	 * Plays self-play games until the chunk is full, labelling every position with the result.
+	 */
+	private static byte[][] selfPlayPositions(long chunk, int size, int nrRows, int nrCols, int winCon, int[] weights) {
+		byte[][] positions = new byte[size][];
+		int[][] board = new int[nrRows][nrCols];
+		int p = 0;
+		for (int game = 0; p < size; game++) {
+			int seed = (int) (chunk * 1_000_003 + game);
+			for (int[] position : WeightTuner.playGame(seed, nrRows, nrCols, winCon, weights)) {
+				if (p == size) {
+					break;
+				}
+				for (int i = 0; i < nrRows; i++) {
+					System.arraycopy(position, i * nrCols, board[i], 0, nrCols);
+				}
+				positions[p++] = encode(board, position[nrRows * nrCols]);
+			}
+		}
+		return positions;
+	}
+	/**
+	 * Compresses positions into a chunk, including the chunk header.
+	 */
+	private static byte[] compressChunk(byte[][] positions) {
+		int recordLength = positions.length == 0 ? 0 : positions[0].length;
+		byte[] raw = new byte[positions.length * recordLength];
+		for (int p = 0; p < positions.length; p++) {
+			System.arraycopy(positions[p], 0, raw, p * recordLength, recordLength);
+		}
+		Deflater deflater = new Deflater();
+		deflater.setInput(raw);
+		deflater.finish();
+		byte[] buffer = new byte[raw.length + 64];
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			length += deflater.deflate(buffer, length, buffer.length - length);
+		}
+		deflater.end();
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_HEADER_LENGTH + length);
+		chunk.putInt(positions.length).putInt(length).put(buffer, 0, length);
+		return chunk.array();
+	}
+	// ==========================================================================
+	// ================================ ENCODING ================================
+	// ==========================================================================
+	/**
+	 * Gets the number of bytes a position takes up.
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @return int value representing the length of a position record
+	 */
+	public static int recordLength(int nrRows, int nrCols) {
+		return (nrRows * nrCols + 3) / 4 + 1;
+	}
+	/**
+	 * Packs a board and its result into a position record.
+	 * @param board int[][] value representing the board state
+	 * @param result int value representing the result of the game for the NPC
+	 * @return byte[] value representing the position record
+	 */
+	public static byte[] encode(int[][] board, int result) {
+		int nrRows = board.length;
+		int nrCols = board[0].length;
+		byte[] record = new byte[recordLength(nrRows, nrCols)];
+		for (int i = 0; i < nrRows; i++) {
+			for (int j = 0; j < nrCols; j++) {
+				int cell = i * nrCols + j;
+				record[cell >> 2] |= board[i][j] << ((cell & 3) << 1);
+			}
+		}
+		record[record.length - 1] = (byte) result;
+		return record;
+	}
+	/**
+	 * Unpacks a position record into a board.
+	 * @param record byte[] value representing the position record
+	 * @param board int[][] value the board is written to
+	 * @return int value representing the result of the game for the NPC
+	 */
+	public static int decode(byte[] record, int[][] board) {
+		return decode(record, 0, board);
+	}
+	private static int decode(byte[] data, int offset, int[][] board) {
+		int nrCols = board[0].length;
+		for (int i = 0; i < board.length; i++) {
+			for (int j = 0; j < nrCols; j++) {
+				int cell = i * nrCols + j;
+				board[i][j] = (data[offset + (cell >> 2)] >> ((cell & 3) << 1)) & 3;
+			}
+		}
+		return data[offset + recordLength(board.length, nrCols) - 1];
+	}
+	/**
+	 * Gets the player to move from the number of pieces on the board.
+	 * @param board int[][] value representing the board state
+	 * @return int value representing the player to move
+	 */
+	public static int playerToMove(int[][] board) {
+		int pieces = 0;
+		for (int[] row : board) {
+			for (int cell : row) {
+				if (cell != 0) {
+					pieces++;
+				}
+			}
+		}
+		return pieces % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+	}
+	// =========================================================================
+	// ================================ READING ================================
+	// =========================================================================
+	/**
+	 * Opens a dataset file and finds its chunks without reading the positions.
+	 * @param file the dataset file
+	 * @return a PositionDataset over the file
+	 */
+	public static PositionDataset open(File file) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			if (in.length() < HEADER_LENGTH || in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a position dataset");
+			}
+			int nrRows = in.readInt();
+			int nrCols = in.readInt();
+			int winCon = in.readInt();
+			List<long[]> chunks = new ArrayList<>();
+			long offset = HEADER_LENGTH;
+			while (offset + CHUNK_HEADER_LENGTH <= in.length()) {
+				in.seek(offset);
+				int size = in.readInt();
+				int length = in.readInt();
+				if (offset + CHUNK_HEADER_LENGTH + length > in.length()) {
+					break; // a chunk that was not fully written is ignored
+				}
+				chunks.add(new long[] {offset, size});
+				offset += CHUNK_HEADER_LENGTH + length;
+			}
+			long[] chunkOffsets = new long[chunks.size()];
+			int[] chunkSizes = new int[chunks.size()];
+			for (int c = 0; c < chunks.size(); c++) {
+				chunkOffsets[c] = chunks.get(c)[0];
+				chunkSizes[c] = (int) chunks.get(c)[1];
+			}
+			return new PositionDataset(file, nrRows, nrCols, winCon, chunkOffsets, chunkSizes);
+		}
+	}
+	/**
+	 * Gets a reader over all positions.
+	 * @return a Reader over every chunk
+	 */
+	public Reader reader() throws IOException {
+		return new Reader(0, chunkOffsets.length);
+	}
+	/**
+	 * Splits the dataset into readers over disjoint ranges of chunks, for parallel consumers.
+	 * @param parts int value representing the maximum number of readers
+	 * @return List of Readers that together cover every position once
+	 */
+	public List<Reader> split(int parts) throws IOException {
+		List<Reader> readers = new ArrayList<>();
+		int nrChunks = chunkOffsets.length;
+		parts = Math.max(1, Math.min(parts, nrChunks));
+		for (int p = 0; p < parts; p++) {
+			readers.add(new Reader(nrChunks * p / parts, nrChunks * (p + 1) / parts));
+		}
+		return readers;
+	}
+	/**
+	 * Reads positions one at a time, holding one decompressed chunk in memory.
+	 * The board returned by getBoard is reused for every position.
+	 */
+	public final class Reader implements Closeable
+	{
+		private final RandomAccessFile in;
+		private final Inflater inflater = new Inflater();
+		private final int endChunk;
+		private final int recordLength = recordLength(nrRows, nrCols);
+		private final int[][] board = new int[nrRows][nrCols];
+		private byte[] compressed = new byte[0];
+		private byte[] raw = new byte[0];
+		private int chunk;
+		private int positionsInChunk;
+		private int index;
+		private int result;
+
+		private Reader(int startChunk, int endChunk) throws IOException {
+			this.in = new RandomAccessFile(file, "r");
+			this.chunk = startChunk;
+			this.endChunk = endChunk;
+		}
+		/**
+		 * Moves to the next position.
+		 * @return boolean value representing whether there was a next position
+		 */
+		public boolean next() throws IOException {
+			while (index == positionsInChunk) {
+				if (chunk == endChunk) {
+					return false;
+				}
+				readChunk(chunk++);
+			}
+			result = decode(raw, index * recordLength, board);
+			index++;
+			return true;
+		}
+		private void readChunk(int c) throws IOException {
+			in.seek(chunkOffsets[c]);
+			int size = in.readInt();
+			int length = in.readInt();
+			if (compressed.length < length) {
+				compressed = new byte[length];
+			}
+			if (raw.length < size * recordLength) {
+				raw = new byte[size * recordLength];
+			}
+			in.readFully(compressed, 0, length);
+			inflater.reset();
+			inflater.setInput(compressed, 0, length);
+			try {
+				int read = 0;
+				while (read < size * recordLength && !inflater.finished()) {
+					int n = inflater.inflate(raw, read, size * recordLength - read);
+					if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new IOException("Truncated chunk " + c + " in " + file);
+					}
+					read += n;
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Corrupt chunk " + c + " in " + file, e);
+			}
+			positionsInChunk = size;
+			index = 0;
+		}
+		@Override
+		public void close() throws IOException {
+			inflater.end();
+			in.close();
+		}
+		public int[][] getBoard() {return board;}
+		public int getResult() {return result;}
+		public int getPlayer() {return playerToMove(board);}
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	public int getNrRows() {return nrRows;}
+	public int getNrCols() {return nrCols;}
+	public int getWinCon() {return winCon;}
+	public int getNrChunks() {return chunkOffsets.length;}
+	public long getNrPositions() {
+		long total = 0;
+		for (int size : chunkSizes) {
+			total += size;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * Hashes boards to 64-bit keys that are the same in every run of the program.
+ * Each occupied cell contributes a fixed pseudo-random number, so equal boards
+ * with equal settings always get equal keys.
+ *
+ * @author s1808795
+ */
+public final class PositionHash
+{
+	// A private constructor prevents other code from instantiating
+	// a class that is meant to be used in a static context.
+	private PositionHash() {}
+
+	/**
+	 * Hashes a board together with its game settings.
+	 * @param board int[][] value representing the board state
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return long value representing the key of the position
+	 */
+	public static long hash(int[][] board, int winCon) {
+		int nrRows = board.length;
+		int nrCols = board[0].length;
+		long key = settingsKey(nrRows, nrCols, winCon);
+		for (int i = 0; i < nrRows; i++) {
+			for (int j = 0; j < nrCols; j++) {
+				if (board[i][j] != 0) {
+					key ^= pieceKey(i * nrCols + j, board[i][j]);
+				}
+			}
+		}
+		return key;
+	}
+	/**
+	 * Gets the key of the empty board for the given settings.
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return long value representing the key of the settings
+	 */
+	public static long settingsKey(int nrRows, int nrCols, int winCon) {
+		return mix(((long) nrRows << 40) | ((long) nrCols << 20) | winCon);
+	}
+	/**
+	 * Gets the number a piece contributes to the key, so keys can be updated one move at a time.
+	 * @param cell int value representing the index of the cell, row * nrCols + column
+	 * @param piece int value representing the player owning the piece
+	 * @return long value representing the key of the piece
+	 */
+	public static long pieceKey(int cell, int piece) {
+		return mix(0x9E3779B97F4A7C15L * (4L * cell + piece));
+	}
+	/**
+	 * Scrambles the bits of a value (the SplitMix64 finaliser).
+	 * @param value long value to scramble
+	 * @return long value representing the scrambled value
+	 */
+	public static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
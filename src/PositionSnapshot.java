@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+/**
+ * An immutable copy of the position in a Model, packed into one bit per cell for each player.
+ * The Model publishes a new snapshot after every change, so other threads can read a
+ * consistent board without locks. Each snapshot links to the one before the last move, so
+ * the snapshots of every earlier position are kept at the cost of a few longs per move.
+ *
+ * @author s1808795
+ */
+public final class PositionSnapshot
+{
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int nrRows;
+	private final int nrCols;
+	private final int winCon;
+	private final int player;
+	private final int nrMoves;
+	private final int lastMove;
+	private final boolean hasSurrendered;
+	// the cells of player 1 followed by the cells of player 2, bit i is the cell row * nrCols + column
+	private final long[] pieces;
+	private final long key;
+	private final PositionSnapshot previous;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	private PositionSnapshot(int nrRows, int nrCols, int winCon, int player, int nrMoves, int lastMove,
+			boolean hasSurrendered, long[] pieces, long key, PositionSnapshot previous) {
+		this.nrRows = nrRows;
+		this.nrCols = nrCols;
+		this.winCon = winCon;
+		this.player = player;
+		this.nrMoves = nrMoves;
+		this.lastMove = lastMove;
+		this.hasSurrendered = hasSurrendered;
+		this.pieces = pieces;
+		this.key = key;
+		this.previous = previous;
+	}
+	/**
+	 * Creates a snapshot of the empty board, with the first player to move.
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return the PositionSnapshot of the empty board
+	 */
+	public static PositionSnapshot empty(int nrRows, int nrCols, int winCon) {
+		return new PositionSnapshot(nrRows, nrCols, winCon, Model.PLAYER_1, 0, -1, false,
+				new long[2 * words(nrRows * nrCols)], PositionHash.settingsKey(nrRows, nrCols, winCon), null);
+	}
+	/**
+	 * Creates a snapshot of a board whose moves are not known.
+	 * @param board int[][] value representing the board state
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param player int value representing the player to move
+	 * @return the PositionSnapshot of the board, with no earlier snapshots
+	 */
+	public static PositionSnapshot of(int[][] board, int winCon, int player) {
+		int nrRows = board.length;
+		int nrCols = board[0].length;
+		int words = words(nrRows * nrCols);
+		long[] pieces = new long[2 * words];
+		int nrMoves = 0;
+		for (int i = 0; i < nrRows; i++) {
+			for (int j = 0; j < nrCols; j++) {
+				if (board[i][j] != 0) {
+					int cell = i * nrCols + j;
+					pieces[(board[i][j] - 1) * words + cell / 64] |= 1L << cell;
+					nrMoves++;
+				}
+			}
+		}
+		return new PositionSnapshot(nrRows, nrCols, winCon, player, nrMoves, -1, false, pieces,
+				PositionHash.hash(board, winCon), null);
+	}
+	private static int words(int nrCells) {
+		return (nrCells + 63) / 64;
+	}
+	// ===========================================================================
+	// ================================ UPDATES ==================================
+	// ===========================================================================
+	/**
+	 * Creates the snapshot after a piece is dropped, linked back to this one, with the other player to move.
+	 * @param row int value representing the row the piece lands in
+	 * @param col int value representing the column of the piece
+	 * @param piece int value representing the player owning the piece
+	 * @return the PositionSnapshot after the move
+	 */
+	public PositionSnapshot afterMove(int row, int col, int piece) {
+		int cell = row * nrCols + col;
+		long[] after = pieces.clone();
+		after[(piece - 1) * (pieces.length / 2) + cell / 64] |= 1L << cell;
+		int next = piece == Model.PLAYER_1 ? Model.PLAYER_2 : Model.PLAYER_1;
+		return new PositionSnapshot(nrRows, nrCols, winCon, next, nrMoves + 1, col, hasSurrendered, after,
+				key ^ PositionHash.pieceKey(cell, piece), this);
+	}
+	/**
+	 * Creates a snapshot of the same position with another player to move.
+	 * @param player int value representing the player to move
+	 * @return the PositionSnapshot with the player changed
+	 */
+	public PositionSnapshot withPlayer(int player) {
+		return new PositionSnapshot(nrRows, nrCols, winCon, player, nrMoves, lastMove, hasSurrendered, pieces, key,
+				previous);
+	}
+	/**
+	 * Creates a snapshot of the same position after the player to move has surrendered.
+	 * @return the PositionSnapshot with the surrender recorded
+	 */
+	public PositionSnapshot withSurrender() {
+		return new PositionSnapshot(nrRows, nrCols, winCon, player, nrMoves, lastMove, true, pieces, key, previous);
+	}
+	// ===========================================================================
+	// ================================ READING ==================================
+	// ===========================================================================
+	/**
+	 * Gets the piece in a cell.
+	 * @param row int value representing the row
+	 * @param col int value representing the column
+	 * @return int value representing the player owning the piece, or 0 if the cell is empty
+	 */
+	public int getPiece(int row, int col) {
+		int cell = row * nrCols + col;
+		int words = pieces.length / 2;
+		if ((pieces[cell / 64] >>> cell & 1) != 0) {
+			return Model.PLAYER_1;
+		} else if ((pieces[words + cell / 64] >>> cell & 1) != 0) {
+			return Model.PLAYER_2;
+		}
+		return 0;
+	}
+	/**
+	 * Unpacks the board into a new array the caller may change.
+	 * @return int[][] value representing the board state
+	 */
+	public int[][] toBoard() {
+		int[][] board = new int[nrRows][nrCols];
+		for (int i = 0; i < nrRows; i++) {
+			for (int j = 0; j < nrCols; j++) {
+				board[i][j] = getPiece(i, j);
+			}
+		}
+		return board;
+	}
+	/**
+	 * Gets the snapshots of the game from the earliest one known up to this one.
+	 * @return List of PositionSnapshot values, one per move
+	 */
+	public List<PositionSnapshot> history() {
+		List<PositionSnapshot> history = new ArrayList<>();
+		for (PositionSnapshot snapshot = this; snapshot != null; snapshot = snapshot.previous) {
+			history.add(snapshot);
+		}
+		Collections.reverse(history);
+		return history;
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	public int getNrRows() {return nrRows;}
+	public int getNrCols() {return nrCols;}
+	public int getWinCon() {return winCon;}
+	public int getPlayer() {return player;}
+	public int getNrMoves() {return nrMoves;}
+	public boolean hasSurrendered() {return hasSurrendered;}
+	/**
+	 * Gets the column of the move that led to this position.
+	 * @return int value representing the column, or -1 if it is not known
+	 */
+	public int getLastMove() {return lastMove;}
+	/**
+	 * Gets the key of the position, equal to PositionHash.hash of the board.
+	 * @return long value representing the key of the position
+	 */
+	public long getKey() {return key;}
+	/**
+	 * Gets the snapshot before the last move.
+	 * @return the previous PositionSnapshot, or null if it is not known
+	 */
+	public PositionSnapshot getPrevious() {return previous;}
+}
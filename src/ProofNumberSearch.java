@@ -0,0 +1,195 @@
+/**
+ * Proves forced wins with proof-number search.
+ * The search grows a tree towards the move that is cheapest to prove or disprove. A node's
+ * proof number is how many more leaves must be shown to be wins for the attacker to prove
+ * it, its disproof number how many to disprove it. Draws count as failures for the attacker.
+ * The tree is stored in preallocated arrays, so the search never uses more than its node budget.
+ * The arrays are reused by every search, which starts again from an empty tree.
+ *
+ * @author s1808795
+ */
+public final class ProofNumberSearch
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final int INFINITY = Integer.MAX_VALUE / 2;
+	public static final int BYTES_PER_NODE = 24;
+	public static final int NOT_PROVEN = -1;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int maxNodes;
+	private final int[] proof;
+	private final int[] disproof;
+	private final int[] parent;
+	private final int[] firstChild;
+	private final int[] nrChildren;
+	private final int[] move;
+	private int nrNodes;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param maxNodes int value representing the number of nodes the tree may hold
+	 */
+	public ProofNumberSearch(int maxNodes) {
+		this.maxNodes = maxNodes;
+		proof = new int[maxNodes];
+		disproof = new int[maxNodes];
+		parent = new int[maxNodes];
+		firstChild = new int[maxNodes];
+		nrChildren = new int[maxNodes];
+		move = new int[maxNodes];
+	}
+	/**
+	 * Creates a search that fits in a memory budget.
+	 * @param bytes long value representing the memory the tree may use
+	 * @return a ProofNumberSearch with as many nodes as fit in the budget
+	 */
+	public static ProofNumberSearch withMemory(long bytes) {
+		return new ProofNumberSearch((int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, bytes / BYTES_PER_NODE)));
+	}
+	// ==========================================================================
+	// ================================ SEARCH ==================================
+	// ==========================================================================
+	/**
+	 * Looks for a forced win for the player to move.
+	 * @param board int[][] value representing the board state, restored when the search returns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param attacker int value representing the player to move
+	 * @return int value representing the column that starts a forced win, or NOT_PROVEN if no win
+	 * was proven within the node budget or the position is not a win
+	 */
+	public int findForcedWin(int[][] board, int winCon, int attacker) {
+		reset();
+		int[] path = new int[board.length * board[0].length + 1];
+		while (proof[0] != 0 && disproof[0] != 0) {
+			// Descend to the most-proving leaf, playing its moves on the board.
+			int node = 0;
+			int depth = 0;
+			while (firstChild[node] >= 0) {
+				boolean attackerToMove = depth % 2 == 0;
+				int best = firstChild[node];
+				for (int c = firstChild[node] + 1; c < firstChild[node] + nrChildren[node]; c++) {
+					if (attackerToMove ? proof[c] < proof[best] : disproof[c] < disproof[best]) {
+						best = c;
+					}
+				}
+				int col = move[best];
+				board[NPC.freeRow(board, col)][col] = attackerToMove ? attacker : 3 - attacker;
+				path[depth++] = col;
+				node = best;
+			}
+			boolean expanded = expand(node, board, winCon, depth % 2 == 0 ? attacker : 3 - attacker, depth % 2 == 0);
+			// Update the ancestors and take their moves back.
+			while (true) {
+				if (firstChild[node] >= 0) {
+					update(node, depth % 2 == 0);
+				}
+				if (depth == 0) {
+					break;
+				}
+				int col = path[--depth];
+				board[NPC.freeRow(board, col) + 1][col] = 0;
+				node = parent[node];
+			}
+			if (!expanded) {
+				break;
+			}
+		}
+		if (proof[0] != 0) {
+			return NOT_PROVEN;
+		}
+		for (int c = firstChild[0]; c < firstChild[0] + nrChildren[0]; c++) {
+			if (proof[c] == 0) {
+				return move[c];
+			}
+		}
+		return NOT_PROVEN;
+	}
+	/**
+	 * Empties the tree down to an unexpanded root, so the arrays can hold a new search.
+	 */
+	public void reset() {
+		nrNodes = 1;
+		proof[0] = 1;
+		disproof[0] = 1;
+		parent[0] = -1;
+		firstChild[0] = -1;
+	}
+	/**
+	 * Adds the children of a leaf, deciding the ones where the game is over.
+	 * @return boolean value representing whether there was room for the children
+	 */
+	private boolean expand(int node, int[][] board, int winCon, int piece, boolean attackerToMove) {
+		int nrCols = board[0].length;
+		if (nrNodes + nrCols > maxNodes) {
+			return false;
+		}
+		int first = nrNodes;
+		for (int j : NPC.columnOrder(nrCols)) {
+			int row = NPC.freeRow(board, j);
+			if (row < 0) {
+				continue;
+			}
+			int child = nrNodes++;
+			parent[child] = node;
+			firstChild[child] = -1;
+			move[child] = j;
+			board[row][j] = piece;
+			boolean full = row == 0 && isTopRowFull(board);
+			if (NPC.isWinningMove(board, row, j, winCon)) {
+				proof[child] = attackerToMove ? 0 : INFINITY;
+				disproof[child] = attackerToMove ? INFINITY : 0;
+			} else if (full) {
+				proof[child] = INFINITY;
+				disproof[child] = 0;
+			} else {
+				proof[child] = 1;
+				disproof[child] = 1;
+			}
+			board[row][j] = 0;
+		}
+		firstChild[node] = first;
+		nrChildren[node] = nrNodes - first;
+		if (nrNodes == first) {
+			// No moves left: the game is a draw.
+			firstChild[node] = -1;
+			proof[node] = INFINITY;
+			disproof[node] = 0;
+		}
+		return true;
+	}
+	/**
+	 * Recomputes the proof and disproof numbers of a node from its children.
+	 */
+	private void update(int node, boolean attackerToMove) {
+		int min = INFINITY;
+		long sum = 0;
+		for (int c = firstChild[node]; c < firstChild[node] + nrChildren[node]; c++) {
+			int minOf = attackerToMove ? proof[c] : disproof[c];
+			int sumOf = attackerToMove ? disproof[c] : proof[c];
+			min = Math.min(min, minOf);
+			sum += sumOf;
+		}
+		int total = (int) Math.min(sum, INFINITY);
+		proof[node] = attackerToMove ? min : total;
+		disproof[node] = attackerToMove ? total : min;
+	}
+	private static boolean isTopRowFull(int[][] board) {
+		for (int cell : board[0]) {
+			if (cell == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	public int getMaxNodes() {return maxNodes;}
+	public int getNrNodes() {return nrNodes;}
+}
@@ -0,0 +1,414 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+/**
+ * Runs the NPC over a corpus of reference positions and checks it against a stored baseline.
+ * Every position is stored with its solved best moves and the number of positions the NPC
+ * searches there at a fixed depth. A move is correct when it keeps the solved value.
+ * The run fails when fewer moves are correct than in the baseline, or when the total number
+ * of positions searched grows or the positions searched per second fall by more than
+ * MAX_REGRESSION. The baseline throughput depends on the machine, so record it on the machine
+ * the suite is run on. Positions are searched without cache or forced win search; a solution
+ * book in the working directory for one of the board sizes would skip the search.
+ * Usage: java ReferenceSuite                      (runs the suite against the baseline)
+ *        java ReferenceSuite baseline             (records the node counts and the baseline)
+ *        java ReferenceSuite generate count rows columns winCon minPly maxPly depth
+ *
+ * @author s1808795
+ */
+public final class ReferenceSuite
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final String CORPUS_FILE = "referencePositions.txt";
+	public static final String BASELINE_FILE = "referenceBaseline.txt";
+	public static final double MAX_REGRESSION = 0.25;
+	public static final int NR_TIMED_RUNS = 3;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final List<Position> positions;
+	private final int[] weights;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param positions List of the reference positions
+	 * @param weights int[] value representing the score of each window feature
+	 */
+	public ReferenceSuite(List<Position> positions, int[] weights) {
+		this.positions = positions;
+		this.weights = weights.clone();
+	}
+	// ==============================================================================
+	// ================================ MAIN PROGRAM ================================
+	// ==============================================================================
+	/**
+	 * Runs the suite, records a new baseline or adds generated positions to the corpus.
+	 * @param args the command and its arguments
+	 */
+	public static void main(String[] args) throws IOException {
+		File corpus = new File(CORPUS_FILE);
+		if (args.length == 8 && args[0].equals("generate")) {
+			int[] settings = new int[7];
+			for (int i = 0; i < settings.length; i++) {
+				settings[i] = Integer.parseInt(args[i + 1]);
+			}
+			if (!new Model().areSettingsValid(settings[1], settings[2], settings[3])) {
+				System.out.println("Invalid game settings.");
+				return;
+			}
+			List<Position> positions = corpus.exists() ? read(corpus) : new ArrayList<>();
+			positions.addAll(generate(settings[0], settings[1], settings[2], settings[3], settings[4], settings[5],
+					settings[6], new Random()));
+			write(corpus, positions);
+			System.out.printf("%d positions in %s.\n", positions.size(), CORPUS_FILE);
+			return;
+		}
+		if (args.length > 1 || (args.length == 1 && !args[0].equals("baseline"))) {
+			System.out.println("Usage: java ReferenceSuite [baseline]");
+			System.out.println("       java ReferenceSuite generate count rows columns winCon minPly maxPly depth");
+			return;
+		}
+		if (!corpus.exists()) {
+			System.out.println("No reference positions found in " + CORPUS_FILE + ".");
+			return;
+		}
+		ReferenceSuite suite = new ReferenceSuite(read(corpus), NPC.loadWeights(NPC.WEIGHTS_FILE));
+		Result result = suite.run();
+		System.out.printf("Correct moves: %d of %d (%.1f%%)\n", result.correct, suite.positions.size(),
+				100.0 * result.correct / suite.positions.size());
+		System.out.printf("Positions searched: %d (%d reference positions searched a different number)\n",
+				result.nodes, result.changedNodeCounts);
+		System.out.printf("Positions per second: %d\n", result.nodesPerSecond);
+		File baseline = new File(BASELINE_FILE);
+		if (args.length == 1) {
+			for (int p = 0; p < suite.positions.size(); p++) {
+				suite.positions.get(p).nodes = result.nodeCounts[p];
+			}
+			write(corpus, suite.positions);
+			writeBaseline(baseline, result);
+			System.out.println("Baseline saved to " + BASELINE_FILE + ".");
+			return;
+		}
+		if (!baseline.exists()) {
+			System.out.println("No baseline found, run java ReferenceSuite baseline to record one.");
+			return;
+		}
+		List<String> regressions = result.regressionsAgainst(readBaseline(baseline));
+		for (String regression : regressions) {
+			System.out.println("REGRESSION: " + regression);
+		}
+		if (!regressions.isEmpty()) {
+			System.exit(1);
+		}
+		System.out.println("No regressions against the baseline.");
+	}
+	// =====================================================================
+	// ================================ RUN ================================
+	// =====================================================================
+	/**
+	 * Lets the NPC choose a move in every position, once to warm up and then NR_TIMED_RUNS times on the clock.
+	 * @return the Result of the fastest timed run
+	 */
+	public Result run() {
+		runOnce();
+		Result result = null;
+		for (int r = 0; r < NR_TIMED_RUNS; r++) {
+			Result timed = runOnce();
+			if (result == null || timed.nodesPerSecond > result.nodesPerSecond) {
+				result = timed;
+			}
+		}
+		return result;
+	}
+	private Result runOnce() {
+		Result result = new Result(positions.size());
+		long time = 0;
+		for (int p = 0; p < positions.size(); p++) {
+			Position position = positions.get(p);
+			Model model = position.toModel();
+			NPC npc = new NPC(model.getPlayer(), weights, position.depth, null, 0);
+			long start = System.nanoTime();
+			int move = npc.bestMove(model);
+			time += System.nanoTime() - start;
+			result.nodeCounts[p] = npc.getNodes();
+			result.nodes += npc.getNodes();
+			if (move >= 0 && position.isBest(move)) {
+				result.correct++;
+			}
+			if (npc.getNodes() != position.nodes) {
+				result.changedNodeCounts++;
+			}
+		}
+		result.nodesPerSecond = time == 0 ? 0 : (long) (result.nodes * 1e9 / time);
+		return result;
+	}
+	// ============================================================================
+	// ================================ GENERATION ================================
+	// ============================================================================
+	/**
+	 * Plays random games and solves a position from each, keeping those where some moves are worse than others.
+	 * Moves that lose at once are not played, so the games stay close to real play.
+	 * @param count int value representing the number of positions to generate
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param minPly int value representing the fewest moves made before a position
+	 * @param maxPly int value representing the most moves made before a position
+	 * @param depth int value representing the depth the NPC searches the positions at
+	 * @param random the Random the games are played with
+	 * @return List of the new reference positions
+	 */
+	public static List<Position> generate(int count, int nrRows, int nrCols, int winCon, int minPly, int maxPly,
+			int depth, Random random) {
+		Solver solver = new Solver(nrRows, nrCols, winCon);
+		List<Position> positions = new ArrayList<>();
+		while (positions.size() < count) {
+			int[] moves = playRandomGame(nrRows, nrCols, winCon, minPly + random.nextInt(maxPly - minPly + 1), random);
+			if (moves == null) {
+				continue;
+			}
+			int[] values = solver.solveMoves(moves);
+			int best = NPC.NO_MOVE;
+			boolean allEqual = true;
+			for (int value : values) {
+				if (value != NPC.NO_MOVE) {
+					allEqual &= best == NPC.NO_MOVE || value == best;
+					best = Math.max(best, value);
+				}
+			}
+			if (allEqual) {
+				continue;
+			}
+			boolean[] bestMoves = new boolean[nrCols];
+			for (int j = 0; j < nrCols; j++) {
+				bestMoves[j] = values[j] == best;
+			}
+			Position position = new Position(nrRows, nrCols, winCon, depth, moves, best, bestMoves, 0);
+			Model model = position.toModel();
+			NPC npc = new NPC(model.getPlayer(), NPC.loadWeights(NPC.WEIGHTS_FILE), depth, null, 0);
+			npc.bestMove(model);
+			position.nodes = npc.getNodes();
+			positions.add(position);
+			System.out.printf("Position %d: %s\n", positions.size(), position);
+		}
+		return positions;
+	}
+	/**
+	 * Plays random moves up to a ply.
+	 * @return int[] value representing the moves played, or null if the game ended or is decided at once
+	 */
+	private static int[] playRandomGame(int nrRows, int nrCols, int winCon, int nrMoves, Random random) {
+		int[][] board = new int[nrRows][nrCols];
+		int[] moves = new int[nrMoves];
+		for (int m = 0; m <= nrMoves; m++) {
+			int player = m % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+			Tactics tactics = Tactics.of(board, winCon, player);
+			if (tactics.getWinningMove() >= 0 || tactics.isLost()) {
+				return null;
+			}
+			if (m == nrMoves) {
+				return moves;
+			}
+			int col = tactics.getForcedMove();
+			if (col < 0) {
+				List<Integer> safe = new ArrayList<>();
+				for (int j = 0; j < nrCols; j++) {
+					if (tactics.isSafe(j)) {
+						safe.add(j);
+					}
+				}
+				if (safe.isEmpty()) {
+					return null;
+				}
+				col = safe.get(random.nextInt(safe.size()));
+			}
+			board[NPC.freeRow(board, col)][col] = player;
+			moves[m] = col;
+		}
+		return moves;
+	}
+	// =======================================================================
+	// ================================ FILES ================================
+	// =======================================================================
+	/**
+	 * Reads the reference positions, one per line. Lines starting with # are comments.
+	 * @param file the corpus file
+	 * @return List of the reference positions
+	 */
+	public static List<Position> read(File file) throws IOException {
+		List<Position> positions = new ArrayList<>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			if (!line.isBlank() && !line.startsWith("#")) {
+				positions.add(Position.parse(line.trim()));
+			}
+		}
+		return positions;
+	}
+	/**
+	 * Writes the reference positions, one per line.
+	 * @param file the corpus file
+	 * @param positions List of the reference positions
+	 */
+	public static void write(File file, List<Position> positions) throws IOException {
+		StringBuilder text = new StringBuilder();
+		text.append("# rows columns winCon depth moves value bestMoves nodes\n");
+		text.append("# moves are 0-based columns from the empty board, value is W, D or L for the player to move\n");
+		for (Position position : positions) {
+			text.append(position).append('\n');
+		}
+		Files.writeString(file.toPath(), text);
+	}
+	private static Map<String, Long> readBaseline(File file) throws IOException {
+		Map<String, Long> baseline = new HashMap<>();
+		for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			String[] parts = line.trim().split(" ");
+			if (parts.length == 2) {
+				baseline.put(parts[0], Long.parseLong(parts[1]));
+			}
+		}
+		return baseline;
+	}
+	private static void writeBaseline(File file, Result result) throws IOException {
+		Files.writeString(file.toPath(), "correct " + result.correct + "\nnodes " + result.nodes
+				+ "\nnodesPerSecond " + result.nodesPerSecond + "\n");
+	}
+	/**
+	 * A position of the corpus: the game settings, the moves leading to it and its solved moves.
+	 */
+	public static final class Position
+	{
+		private static final String VALUES = "LDW";
+		private final int nrRows;
+		private final int nrCols;
+		private final int winCon;
+		private final int depth;
+		private final int[] moves;
+		private final int value;
+		private final boolean[] bestMoves;
+		private long nodes;
+
+		private Position(int nrRows, int nrCols, int winCon, int depth, int[] moves, int value, boolean[] bestMoves,
+				long nodes) {
+			this.nrRows = nrRows;
+			this.nrCols = nrCols;
+			this.winCon = winCon;
+			this.depth = depth;
+			this.moves = moves;
+			this.value = value;
+			this.bestMoves = bestMoves;
+			this.nodes = nodes;
+		}
+		/**
+		 * Reads a position from a line of the corpus.
+		 * @param line String value holding the position
+		 * @return the Position
+		 */
+		public static Position parse(String line) {
+			String[] parts = line.split(" ");
+			if (parts.length != 8) {
+				throw new IllegalArgumentException("Expected 8 fields in reference position: " + line);
+			}
+			int nrCols = Integer.parseInt(parts[1]);
+			int[] moves = new int[0];
+			if (!parts[4].equals("-")) {
+				String[] columns = parts[4].split("\\.");
+				moves = new int[columns.length];
+				for (int m = 0; m < columns.length; m++) {
+					moves[m] = Integer.parseInt(columns[m]);
+				}
+			}
+			boolean[] bestMoves = new boolean[nrCols];
+			for (String col : parts[6].split(",")) {
+				bestMoves[Integer.parseInt(col)] = true;
+			}
+			return new Position(Integer.parseInt(parts[0]), nrCols, Integer.parseInt(parts[2]),
+					Integer.parseInt(parts[3]), moves, VALUES.indexOf(parts[5]) - 1, bestMoves, Long.parseLong(parts[7]));
+		}
+		/**
+		 * Sets up a game at this position.
+		 * @return an object of class Model with the moves played
+		 */
+		public Model toModel() {
+			Model model = new Model();
+			model.changeGameSettings(nrRows, nrCols, winCon);
+			for (int move : moves) {
+				model.makeMove(move);
+				model.switchPlayer();
+			}
+			return model;
+		}
+		/**
+		 * Checks if a move keeps the solved value of the position.
+		 * @param col int value representing the column
+		 * @return boolean value representing whether the move is one of the best
+		 */
+		public boolean isBest(int col) {return bestMoves[col];}
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(nrRows).append(' ').append(nrCols).append(' ').append(winCon).append(' ').append(depth).append(' ');
+			for (int m = 0; m < moves.length; m++) {
+				text.append(m > 0 ? "." : "").append(moves[m]);
+			}
+			text.append(moves.length == 0 ? "- " : " ").append(VALUES.charAt(value + 1)).append(' ');
+			String separator = "";
+			for (int j = 0; j < nrCols; j++) {
+				if (bestMoves[j]) {
+					text.append(separator).append(j);
+					separator = ",";
+				}
+			}
+			return text.append(' ').append(nodes).toString();
+		}
+	}
+	/**
+	 * The outcome of one run over the corpus.
+	 */
+	public static final class Result
+	{
+		private final long[] nodeCounts;
+		private int correct;
+		private long nodes;
+		private long nodesPerSecond;
+		private int changedNodeCounts;
+
+		private Result(int nrPositions) {
+			this.nodeCounts = new long[nrPositions];
+		}
+		/**
+		 * Compares the run with the baseline.
+		 * @param baseline Map from each baseline measure to its value
+		 * @return List of String values describing every regression, empty if there is none
+		 */
+		public List<String> regressionsAgainst(Map<String, Long> baseline) {
+			List<String> regressions = new ArrayList<>();
+			if (correct < baseline.getOrDefault("correct", 0L)) {
+				regressions.add(String.format("%d correct moves, the baseline has %d", correct, baseline.get("correct")));
+			}
+			long baseNodes = baseline.getOrDefault("nodes", Long.MAX_VALUE);
+			if (nodes > baseNodes * (1 + MAX_REGRESSION)) {
+				regressions.add(String.format("%d positions searched, the baseline searched %d", nodes, baseNodes));
+			}
+			long baseSpeed = baseline.getOrDefault("nodesPerSecond", 0L);
+			if (nodesPerSecond < baseSpeed * (1 - MAX_REGRESSION)) {
+				regressions.add(String.format("%d positions per second, the baseline has %d", nodesPerSecond, baseSpeed));
+			}
+			return regressions;
+		}
+		public int getCorrect() {return correct;}
+		public long getNodes() {return nodes;}
+		public long getNodesPerSecond() {return nodesPerSecond;}
+		public int getChangedNodeCounts() {return changedNodeCounts;}
+	}
+}
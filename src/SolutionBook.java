@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * The positions solved by the Solver, with their value and best move.
+ * There is one book file per board configuration, loaded the first time a position
+ * with that configuration is looked up.
+ *
+ * @author s1808795
+ */
+public final class SolutionBook
+{
+	private static final Map<Long, Map<Long, int[]>> books = new ConcurrentHashMap<>();
+
+	// A private constructor prevents other code from instantiating
+	// a class that is meant to be used in a static context.
+	private SolutionBook() {}
+
+	/**
+	 * Gets the name of the book file for a board configuration.
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return the book file
+	 */
+	public static File fileFor(int nrRows, int nrCols, int winCon) {
+		return new File(String.format("solved-%dx%dx%d.txt", nrRows, nrCols, winCon));
+	}
+	/**
+	 * Looks up a position.
+	 * @param board int[][] value representing the board state
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @return int[] value holding the value for the player to move (Solver.WIN, DRAW or LOSS) and
+	 * a best move, or null if the position is not in the book
+	 */
+	public static int[] lookup(int[][] board, int winCon) {
+		int nrRows = board.length;
+		int nrCols = board[0].length;
+		Map<Long, int[]> book = books.computeIfAbsent(PositionHash.settingsKey(nrRows, nrCols, winCon),
+				settings -> read(fileFor(nrRows, nrCols, winCon)));
+		if (book.isEmpty()) {
+			return null;
+		}
+		return book.get(PositionHash.hash(board, winCon));
+	}
+	/**
+	 * Reads a book file.
+	 * @param file the book file
+	 * @return Map from position key to value and best move, empty if the file does not exist
+	 */
+	public static Map<Long, int[]> read(File file) {
+		Map<Long, int[]> book = new HashMap<>();
+		if (!file.exists()) {
+			return book;
+		}
+		try {
+			for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				String[] parts = line.split(" ");
+				book.put(Long.parseLong(parts[0]), new int[] {Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("Solution book " + file + " could not be read.");
+			book.clear();
+		}
+		return book;
+	}
+	/**
+	 * Writes a book file and forgets any copy of it that was loaded before.
+	 * @param file the book file
+	 * @param book Map from position key to value and best move
+	 */
+	public static void write(File file, Map<Long, int[]> book) throws IOException {
+		try (FileWriter writer = new FileWriter(file)) {
+			for (Map.Entry<Long, int[]> entry : book.entrySet()) {
+				writer.write(entry.getKey() + " " + entry.getValue()[0] + " " + entry.getValue()[1] + "\n");
+			}
+		}
+		books.clear();
+	}
+}
@@ -0,0 +1,501 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+/**
+ * Solves a board configuration completely, using several worker processes.
+ * The game tree is split at a shallow frontier: every distinct position reached after
+ * FRONTIER_DEPTH moves becomes a work unit. Units are listed in a work directory, and
+ * worker JVMs claim them by creating a claim file, solve them and write the result to
+ * the done directory. Finished units are never solved again, so a run that is killed
+ * continues where it stopped when it is started again. Claims of workers that are no
+ * longer running are released, and workers stop when the coordinator is gone. When every unit is done the
+ * values are combined up to the empty board and written to a SolutionBook for the NPC.
+ * Usage: java Solver rows columns winCon [workers] [frontierDepth]
+ *
+ * @author s1808795
+ */
+public final class Solver
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final int DEFAULT_FRONTIER_DEPTH = 6;
+	public static final int TABLE_BITS = 22;
+	public static final int WIN = 1;
+	public static final int DRAW = 0;
+	public static final int LOSS = -1;
+	private static final int EXACT = 0;
+	private static final int LOWER = 1;
+	private static final int UPPER = 2;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int nrRows;
+	private final int nrCols;
+	private final int winCon;
+	private final int[][] board;
+	private final int[] order;
+	private final long[] tableKeys = new long[1 << TABLE_BITS];
+	private final byte[] tableValues = new byte[1 << TABLE_BITS];
+	private long key;
+	private long nodes;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 */
+	public Solver(int nrRows, int nrCols, int winCon) {
+		this.nrRows = nrRows;
+		this.nrCols = nrCols;
+		this.winCon = winCon;
+		this.board = new int[nrRows][nrCols];
+		this.order = NPC.columnOrder(nrCols);
+		this.key = PositionHash.settingsKey(nrRows, nrCols, winCon);
+	}
+	// ==============================================================================
+	// ================================ MAIN PROGRAM ================================
+	// ==============================================================================
+	/**
+	 * Runs the coordinator, or a worker when started with --worker directory.
+	 * @param args the game settings followed by the optional number of workers and frontier depth
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length == 2 && args[0].equals("--worker")) {
+			runWorker(new File(args[1]));
+			return;
+		}
+		if (args.length < 3) {
+			System.out.println("Usage: java Solver rows columns winCon [workers] [frontierDepth]");
+			return;
+		}
+		int nrRows = Integer.parseInt(args[0]);
+		int nrCols = Integer.parseInt(args[1]);
+		int winCon = Integer.parseInt(args[2]);
+		int nrWorkers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		int frontierDepth = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_FRONTIER_DEPTH;
+		if (!new Model().areSettingsValid(nrRows, nrCols, winCon)) {
+			System.out.println("Invalid game settings.");
+			return;
+		}
+		File dir = new File(String.format("solver-%dx%dx%d", nrRows, nrCols, winCon));
+		int storedDepth = readFrontierDepth(dir, frontierDepth);
+		if (storedDepth != frontierDepth) {
+			System.out.printf("Continuing the earlier run with frontier depth %d.\n", storedDepth);
+			frontierDepth = storedDepth;
+		}
+		Map<Long, int[]> units = prepare(dir, nrRows, nrCols, winCon, frontierDepth);
+		long start = System.nanoTime();
+		List<Process> workers = new ArrayList<>();
+		String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+		for (int w = 0; w < nrWorkers; w++) {
+			workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					"Solver", "--worker", dir.getPath()).inheritIO().start());
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> workers.forEach(Process::destroy)));
+		for (Process worker : workers) {
+			worker.waitFor();
+		}
+		Map<Long, int[]> results = readResults(dir, units);
+		if (results.size() < units.size()) {
+			System.out.printf("%d of %d units are not solved, run the solver again to continue.\n",
+					units.size() - results.size(), units.size());
+			return;
+		}
+		Solver solver = new Solver(nrRows, nrCols, winCon);
+		Map<Long, int[]> solved = new LinkedHashMap<>(results);
+		int value = solver.combine(frontierDepth, results, solved);
+		SolutionBook.write(SolutionBook.fileFor(nrRows, nrCols, winCon), solved);
+		String[] names = {"a loss", "a draw", "a win"};
+		System.out.printf("%d * %d, connect %d is %s for the first player (%.1f s this run, %d positions in the book).\n",
+				nrRows, nrCols, winCon, names[value + 1], (System.nanoTime() - start) / 1e9, solved.size());
+	}
+	// ============================================================================
+	// ================================ WORK QUEUE ================================
+	// ============================================================================
+	/**
+	 * Lists the work units in the work directory, unless a previous run already did.
+	 * Claims without a result are left over from workers that were stopped, and are removed.
+	 * @return Map from the key of each unit position to its id and moves
+	 */
+	private static Map<Long, int[]> prepare(File dir, int nrRows, int nrCols, int winCon, int frontierDepth)
+			throws IOException {
+		File unitsFile = new File(dir, "units.txt");
+		Files.createDirectories(new File(dir, "claimed").toPath());
+		Files.createDirectories(new File(dir, "done").toPath());
+		if (!unitsFile.exists()) {
+			Map<Long, int[]> frontier = new LinkedHashMap<>();
+			new Solver(nrRows, nrCols, winCon).collectFrontier(frontierDepth, new int[frontierDepth], 0, frontier);
+			StringBuilder sb = new StringBuilder();
+			sb.append(nrRows).append(' ').append(nrCols).append(' ').append(winCon).append(' ').append(frontierDepth);
+			sb.append('\n');
+			int id = 0;
+			for (int[] moves : frontier.values()) {
+				sb.append(id++);
+				for (int move : moves) {
+					sb.append(' ').append(move);
+				}
+				sb.append('\n');
+			}
+			writeAtomically(unitsFile, sb.toString());
+		}
+		Map<Long, int[]> units = readUnits(dir);
+		int cleared = 0;
+		for (File claim : listFiles(new File(dir, "claimed"))) {
+			if (!new File(new File(dir, "done"), claim.getName()).exists() && !isClaimAlive(claim) && claim.delete()) {
+				cleared++;
+			}
+		}
+		int done = listFiles(new File(dir, "done")).length;
+		System.out.printf("%d work units, %d already done, %d stale claims cleared.\n", units.size(), done, cleared);
+		return units;
+	}
+	/**
+	 * Gets the frontier depth the work units of a work directory were made with.
+	 * @param dir the work directory
+	 * @param frontierDepth int value representing the depth to use if the directory has no units yet
+	 * @return int value representing the frontier depth
+	 */
+	private static int readFrontierDepth(File dir, int frontierDepth) throws IOException {
+		File unitsFile = new File(dir, "units.txt");
+		if (!unitsFile.exists()) {
+			return frontierDepth;
+		}
+		String[] settings = Files.readAllLines(unitsFile.toPath(), StandardCharsets.UTF_8).get(0).split(" ");
+		return Integer.parseInt(settings[3]);
+	}
+	/**
+	 * Checks if the worker that made a claim is still running.
+	 */
+	private static boolean isClaimAlive(File claim) throws IOException {
+		String pid = Files.readString(claim.toPath()).trim();
+		return !pid.isEmpty() && ProcessHandle.of(Long.parseLong(pid)).map(ProcessHandle::isAlive).orElse(false);
+	}
+	/**
+	 * Reads the work units of a work directory.
+	 * @return Map from the key of each unit position to its id followed by its moves
+	 */
+	private static Map<Long, int[]> readUnits(File dir) throws IOException {
+		List<String> lines = Files.readAllLines(new File(dir, "units.txt").toPath(), StandardCharsets.UTF_8);
+		String[] settings = lines.get(0).split(" ");
+		Solver solver = new Solver(Integer.parseInt(settings[0]), Integer.parseInt(settings[1]),
+				Integer.parseInt(settings[2]));
+		Map<Long, int[]> units = new LinkedHashMap<>();
+		for (String line : lines.subList(1, lines.size())) {
+			String[] parts = line.split(" ");
+			int[] unit = new int[parts.length];
+			for (int p = 0; p < parts.length; p++) {
+				unit[p] = Integer.parseInt(parts[p]);
+			}
+			units.put(solver.keyAfter(unit, 1), unit);
+		}
+		return units;
+	}
+	/**
+	 * Claims and solves units until none are left.
+	 * @param dir the work directory
+	 */
+	public static void runWorker(File dir) throws IOException {
+		List<String> lines = Files.readAllLines(new File(dir, "units.txt").toPath(), StandardCharsets.UTF_8);
+		String[] settings = lines.get(0).split(" ");
+		int nrRows = Integer.parseInt(settings[0]);
+		int nrCols = Integer.parseInt(settings[1]);
+		int winCon = Integer.parseInt(settings[2]);
+		Solver solver = new Solver(nrRows, nrCols, winCon);
+		ProcessHandle coordinator = ProcessHandle.current().parent().orElse(null);
+		for (int[] unit : readUnits(dir).values()) {
+			if (coordinator != null && !coordinator.isAlive()) {
+				return;
+			}
+			String name = "unit-" + unit[0];
+			if (new File(new File(dir, "done"), name).exists()) {
+				continue;
+			}
+			Path claim = new File(new File(dir, "claimed"), name).toPath();
+			try {
+				Files.createFile(claim);
+			} catch (FileAlreadyExistsException e) {
+				continue; // another worker has it
+			}
+			Files.writeString(claim, Long.toString(ProcessHandle.current().pid()));
+			// The transposition table is kept between units, as their subtrees overlap.
+			for (int m = 1; m < unit.length; m++) {
+				solver.play(unit[m], m % 2 == 1 ? Model.PLAYER_1 : Model.PLAYER_2);
+			}
+			long start = System.nanoTime();
+			solver.nodes = 0;
+			int[] result = solver.solveRoot(unit.length - 1);
+			for (int m = unit.length - 1; m >= 1; m--) {
+				solver.undo(unit[m]);
+			}
+			writeAtomically(new File(new File(dir, "done"), name), result[0] + " " + result[1] + "\n");
+			System.out.printf("Worker %d solved unit %d: %d (%d nodes, %.1f s)\n", ProcessHandle.current().pid(),
+					unit[0], result[0], solver.nodes, (System.nanoTime() - start) / 1e9);
+		}
+	}
+	/**
+	 * Reads the results of the finished units.
+	 * @return Map from the key of each finished unit position to its value and best move
+	 */
+	private static Map<Long, int[]> readResults(File dir, Map<Long, int[]> units) throws IOException {
+		Map<Long, int[]> results = new HashMap<>();
+		for (Map.Entry<Long, int[]> unit : units.entrySet()) {
+			File done = new File(new File(dir, "done"), "unit-" + unit.getValue()[0]);
+			if (done.exists()) {
+				String[] parts = Files.readString(done.toPath()).trim().split(" ");
+				results.put(unit.getKey(), new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+			}
+		}
+		return results;
+	}
+	/**
+	 * Writes a file under a temporary name and renames it, so it is either complete or missing.
+	 */
+	private static void writeAtomically(File file, String content) throws IOException {
+		Path temp = new File(file.getPath() + ".tmp").toPath();
+		Files.writeString(temp, content);
+		Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	private static File[] listFiles(File dir) {
+		File[] files = dir.listFiles();
+		return files == null ? new File[0] : files;
+	}
+	// =============================================================================
+	// ================================ TREE SPLIT =================================
+	// =============================================================================
+	/**
+	 * Finds every distinct position that is still undecided after depth moves.
+	 */
+	private void collectFrontier(int depth, int[] moves, int ply, Map<Long, int[]> frontier) {
+		if (ply == depth) {
+			frontier.putIfAbsent(key, moves.clone());
+			return;
+		}
+		int piece = ply % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+		for (int j : order) {
+			int row = NPC.freeRow(board, j);
+			if (row < 0) {
+				continue;
+			}
+			play(j, piece);
+			if (!NPC.isWinningMove(board, row, j, winCon) && !isFull()) {
+				moves[ply] = j;
+				collectFrontier(depth, moves, ply + 1, frontier);
+			}
+			undo(j);
+		}
+	}
+	/**
+	 * Combines the unit results up to the empty board, recording every position on the way.
+	 * @param depth int value representing the frontier depth
+	 * @param results Map from the key of each unit position to its value and best move
+	 * @param solved Map the value and best move of every position before the frontier is added to
+	 * @return int value representing the value of the empty board for the first player
+	 */
+	public int combine(int depth, Map<Long, int[]> results, Map<Long, int[]> solved) {
+		return combine(depth, 0, results, solved);
+	}
+	private int combine(int depth, int ply, Map<Long, int[]> results, Map<Long, int[]> solved) {
+		if (ply == depth) {
+			return results.get(key)[0];
+		}
+		int[] known = solved.get(key);
+		if (known != null) {
+			return known[0];
+		}
+		int piece = ply % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+		int best = LOSS - 1;
+		int bestMove = -1;
+		for (int j : order) {
+			int row = NPC.freeRow(board, j);
+			if (row < 0) {
+				continue;
+			}
+			play(j, piece);
+			int value;
+			if (NPC.isWinningMove(board, row, j, winCon)) {
+				value = WIN;
+			} else if (isFull()) {
+				value = DRAW;
+			} else {
+				value = -combine(depth, ply + 1, results, solved);
+			}
+			undo(j);
+			if (value > best) {
+				best = value;
+				bestMove = j;
+			}
+		}
+		solved.put(key, new int[] {best, bestMove});
+		return best;
+	}
+	// =========================================================================
+	// ================================ SEARCH =================================
+	// =========================================================================
+	/**
+	 * Solves the current position exactly.
+	 * @param ply int value representing the number of moves made so far
+	 * @return int[] value holding the value for the player to move (WIN, DRAW or LOSS) and a best move
+	 */
+	public int[] solveRoot(int ply) {
+		int piece = ply % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+		int best = LOSS - 1;
+		int bestMove = -1;
+		for (int j : order) {
+			int row = NPC.freeRow(board, j);
+			if (row < 0) {
+				continue;
+			}
+			play(j, piece);
+			int value;
+			if (NPC.isWinningMove(board, row, j, winCon)) {
+				value = WIN;
+			} else if (isFull()) {
+				value = DRAW;
+			} else {
+				value = -solve(3 - piece, -WIN, -Math.max(best, LOSS));
+			}
+			undo(j);
+			if (value > best) {
+				best = value;
+				bestMove = j;
+			}
+			if (best == WIN) {
+				break;
+			}
+		}
+		return new int[] {best, bestMove};
+	}
+	/**
+	 * Solves every move of a position exactly, without cutting off moves that are worse than the best one.
+	 * @param moves int[] value representing the columns played from the empty board
+	 * @return int[] value holding the value of each column for the player to move, or NPC.NO_MOVE for full columns
+	 */
+	public int[] solveMoves(int[] moves) {
+		for (int m = 0; m < moves.length; m++) {
+			play(moves[m], m % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2);
+		}
+		int piece = moves.length % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2;
+		int[] values = new int[nrCols];
+		for (int j = 0; j < nrCols; j++) {
+			int row = NPC.freeRow(board, j);
+			if (row < 0) {
+				values[j] = NPC.NO_MOVE;
+				continue;
+			}
+			play(j, piece);
+			if (NPC.isWinningMove(board, row, j, winCon)) {
+				values[j] = WIN;
+			} else if (isFull()) {
+				values[j] = DRAW;
+			} else {
+				values[j] = -solve(3 - piece, LOSS, WIN);
+			}
+			undo(j);
+		}
+		for (int m = moves.length - 1; m >= 0; m--) {
+			undo(moves[m]);
+		}
+		return values;
+	}
+	/**
+	 * Negamax with alpha-beta pruning and a transposition table.
+	 * @return int value representing the value for the player to move
+	 */
+	private int solve(int piece, int alpha, int beta) {
+		nodes++;
+		// A move that wins at once is always best.
+		for (int j : order) {
+			int row = NPC.freeRow(board, j);
+			if (row >= 0) {
+				board[row][j] = piece;
+				boolean wins = NPC.isWinningMove(board, row, j, winCon);
+				board[row][j] = 0;
+				if (wins) {
+					return WIN;
+				}
+			}
+		}
+		int slot = (int) (key >>> (64 - TABLE_BITS));
+		int alphaIn = alpha;
+		if (tableKeys[slot] == key) {
+			int value = (tableValues[slot] >> 2) - 1;
+			int flag = tableValues[slot] & 3;
+			if (flag == EXACT) {
+				return value;
+			} else if (flag == LOWER) {
+				alpha = Math.max(alpha, value);
+			} else {
+				beta = Math.min(beta, value);
+			}
+			if (alpha >= beta) {
+				return value;
+			}
+		}
+		int best = LOSS - 1;
+		for (int j : order) {
+			if (board[0][j] != 0) {
+				continue;
+			}
+			play(j, piece);
+			int value = isFull() ? DRAW : -solve(3 - piece, -beta, -alpha);
+			undo(j);
+			best = Math.max(best, value);
+			alpha = Math.max(alpha, value);
+			if (alpha >= beta) {
+				break;
+			}
+		}
+		if (best == LOSS - 1) {
+			best = DRAW;
+		}
+		int flag = best <= alphaIn ? UPPER : best >= beta ? LOWER : EXACT;
+		tableKeys[slot] = key;
+		tableValues[slot] = (byte) ((best + 1) << 2 | flag);
+		return best;
+	}
+	private void play(int col, int piece) {
+		int row = NPC.freeRow(board, col);
+		board[row][col] = piece;
+		key ^= PositionHash.pieceKey(row * nrCols + col, piece);
+	}
+	private void undo(int col) {
+		int row = NPC.freeRow(board, col) + 1;
+		key ^= PositionHash.pieceKey(row * nrCols + col, board[row][col]);
+		board[row][col] = 0;
+	}
+	private boolean isFull() {
+		for (int j = 0; j < nrCols; j++) {
+			if (board[0][j] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Gets the key of the position after the moves in a unit, leaving the board empty again.
+	 */
+	private long keyAfter(int[] unit, int from) {
+		for (int m = from; m < unit.length; m++) {
+			play(unit[m], (m - from) % 2 == 0 ? Model.PLAYER_1 : Model.PLAYER_2);
+		}
+		long result = key;
+		for (int m = unit.length - 1; m >= from; m--) {
+			undo(unit[m]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,83 @@
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * Follows a game by reading its events from a GameEventBuffer on its own thread
+ * and printing them. A spectator that prints slowly falls behind, but never slows down the game.
+ * When it is stopped, it prints every event published before the stop and then ends.
+ *
+ * @author s1808795
+ */
+public final class Spectator implements Runnable
+{
+	/*    constant variable     */
+	public static final long IDLE_WAIT_NANOS = 1_000_000;
+	/*    field     */
+	private final GameEventBuffer.Reader reader;
+	private final PrintStream out;
+	private volatile boolean stopped;
+	private Thread thread;
+
+	/**
+	 * Constructor
+	 * @param events an object of class GameEventBuffer the game publishes to
+	 * @param out the PrintStream events are printed to
+	 */
+	public Spectator(GameEventBuffer events, PrintStream out) {
+		this.reader = events.subscribe();
+		this.out = out;
+	}
+	/**
+	 * Starts following the game on a background thread.
+	 * @param events an object of class GameEventBuffer the game publishes to
+	 * @param out the PrintStream events are printed to
+	 * @return the Spectator that was started
+	 */
+	public static Spectator start(GameEventBuffer events, PrintStream out) {
+		Spectator spectator = new Spectator(events, out);
+		spectator.thread = new Thread(spectator, "spectator");
+		spectator.thread.setDaemon(true);
+		spectator.thread.start();
+		return spectator;
+	}
+	/**
+	 * Prints events until stopped, waiting briefly whenever there are none.
+	 */
+	@Override
+	public void run() {
+		long missed = 0;
+		while (true) {
+			// Read before polling: once stopped is seen, every event published before the stop is available.
+			boolean stopping = stopped;
+			long event = reader.poll();
+			if (reader.getMissed() != missed) {
+				out.printf("(%d events missed)\n", reader.getMissed() - missed);
+				missed = reader.getMissed();
+			}
+			if (event == GameEventBuffer.NO_EVENT) {
+				if (stopping) {
+					break;
+				}
+				out.flush();
+				LockSupport.parkNanos(IDLE_WAIT_NANOS);
+			} else {
+				out.println(GameEventBuffer.describe(event));
+			}
+		}
+		out.flush();
+	}
+	/**
+	 * Stops following the game once the events published so far are printed.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+	/**
+	 * Stops following the game and waits until the events published so far are printed.
+	 */
+	public void stopAndJoin() throws InterruptedException {
+		stop();
+		if (thread != null) {
+			thread.join();
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Finds the tactical moves of a position before any search: a move that wins at once,
+ * the only move that stops the opponent winning at once, and the moves that do not let
+ * the opponent win by playing on top of them.
+ * Boards with up to 64 cells, counting one extra cell above every column, are handled as
+ * bitboards: one long per player, a column at a time from the bottom, so every line of
+ * winCon pieces is found with a few shifts and ands for the whole board at once. Larger
+ * boards are checked one column at a time with the same rules.
+ *
+ * @author s1808795
+ */
+public final class Tactics
+{
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int winningMove;
+	private final int forcedMove;
+	private final boolean[] safe;
+	private final boolean isLost;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	private Tactics(int winningMove, int forcedMove, boolean[] safe) {
+		this.winningMove = winningMove;
+		this.forcedMove = forcedMove;
+		this.safe = safe;
+		boolean anySafe = false;
+		for (boolean s : safe) {
+			anySafe |= s;
+		}
+		this.isLost = winningMove < 0 && !anySafe;
+	}
+	/**
+	 * Finds the tactical moves of the player to move.
+	 * @param board int[][] value representing the board state
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param player int value representing the player to move
+	 * @return the Tactics of the position
+	 */
+	public static Tactics of(int[][] board, int winCon, int player) {
+		int nrRows = board.length;
+		int nrCols = board[0].length;
+		if (nrCols * (nrRows + 1) <= Long.SIZE) {
+			return ofBitboard(board, winCon, player);
+		}
+		return ofColumns(board, winCon, player);
+	}
+	// ===========================================================================
+	// ================================ BITBOARDS ================================
+	// ===========================================================================
+	private static Tactics ofBitboard(int[][] board, int winCon, int player) {
+		int nrRows = board.length;
+		int nrCols = board[0].length;
+		int height = nrRows + 1;
+		long bottom = 0;
+		long own = 0;
+		long mask = 0;
+		for (int j = 0; j < nrCols; j++) {
+			bottom |= 1L << (j * height);
+			for (int i = 0; i < nrRows; i++) {
+				long bit = 1L << (j * height + nrRows - 1 - i);
+				if (board[i][j] != 0) {
+					mask |= bit;
+				}
+				if (board[i][j] == player) {
+					own |= bit;
+				}
+			}
+		}
+		long boardMask = bottom * ((1L << nrRows) - 1);
+		long empty = boardMask & ~mask;
+		long possible = (mask + bottom) & boardMask;
+		long ownWins = winningCells(own, winCon, height) & empty;
+		long otherWins = winningCells(own ^ mask, winCon, height) & empty;
+
+		long winning = ownWins & possible;
+		long forced = possible & otherWins;
+		long candidates = possible;
+		if (forced != 0) {
+			candidates = Long.bitCount(forced) > 1 ? 0 : forced;
+		}
+		// A move below a cell where the opponent would win lets them win on top of it.
+		candidates &= ~(otherWins >>> 1);
+		boolean[] safe = new boolean[nrCols];
+		for (long c = candidates; c != 0; c &= c - 1) {
+			safe[Long.numberOfTrailingZeros(c) / height] = true;
+		}
+		int winningMove = winning == 0 ? -1 : Long.numberOfTrailingZeros(winning) / height;
+		int forcedMove = Long.bitCount(forced) == 1 ? Long.numberOfTrailingZeros(forced) / height : -1;
+		return new Tactics(winningMove, forcedMove, safe);
+	}
+	/**
+	 * Finds the empty or occupied cells that would complete a line of winCon pieces.
+	 * A cell wins if, for some position of the cell in a line, all other cells of the line are
+	 * the player's. Lines cannot run across columns, as the extra cell above every column is never set.
+	 * @param pieces long value representing the cells of the player
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param height int value representing the number of cells per column, including the extra cell
+	 * @return long value representing the cells that complete a line
+	 */
+	public static long winningCells(long pieces, int winCon, int height) {
+		long cells = 0;
+		for (int step : new int[] {1, height, height - 1, height + 1}) {
+			for (int gap = 0; gap < winCon; gap++) {
+				long line = -1L;
+				for (int k = 0; k < winCon && line != 0; k++) {
+					if (k != gap) {
+						line &= shift(pieces, (k - gap) * step);
+					}
+				}
+				cells |= line;
+			}
+		}
+		return cells;
+	}
+	/**
+	 * Moves every cell down by the offset, so that bit p of the result is bit p + offset of the value.
+	 */
+	private static long shift(long value, int offset) {
+		if (offset >= Long.SIZE || offset <= -Long.SIZE) {
+			return 0;
+		}
+		return offset >= 0 ? value >>> offset : value << -offset;
+	}
+	// ==========================================================================
+	// ================================ COLUMNS =================================
+	// ==========================================================================
+	private static Tactics ofColumns(int[][] board, int winCon, int player) {
+		int nrCols = board[0].length;
+		int other = player == Model.PLAYER_1 ? Model.PLAYER_2 : Model.PLAYER_1;
+		int winningMove = -1;
+		int forcedMove = -1;
+		int nrForced = 0;
+		boolean[] safe = new boolean[nrCols];
+		for (int j = 0; j < nrCols; j++) {
+			int row = NPC.freeRow(board, j);
+			if (row < 0) {
+				continue;
+			}
+			if (winningMove < 0 && winsAt(board, row, j, winCon, player)) {
+				winningMove = j;
+			}
+			if (winsAt(board, row, j, winCon, other)) {
+				forcedMove = j;
+				nrForced++;
+			}
+			safe[j] = row == 0 || !winsAt(board, row - 1, j, winCon, other);
+		}
+		if (nrForced > 0) {
+			for (int j = 0; j < nrCols; j++) {
+				safe[j] &= nrForced == 1 && j == forcedMove;
+			}
+		}
+		return new Tactics(winningMove, nrForced == 1 ? forcedMove : -1, safe);
+	}
+	private static boolean winsAt(int[][] board, int row, int col, int winCon, int piece) {
+		board[row][col] = piece;
+		boolean wins = NPC.isWinningMove(board, row, col, winCon);
+		board[row][col] = 0;
+		return wins;
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	/**
+	 * @return int value representing a column that wins at once, or -1
+	 */
+	public int getWinningMove() {return winningMove;}
+	/**
+	 * @return int value representing the only column that stops the opponent winning at once, or -1
+	 */
+	public int getForcedMove() {return forcedMove;}
+	/**
+	 * @param col int value representing a column
+	 * @return boolean value representing whether playing the column does not lose at once
+	 */
+	public boolean isSafe(int col) {return safe[col];}
+	/**
+	 * @return boolean value representing whether every move loses at once
+	 */
+	public boolean isLost() {return isLost;}
+}
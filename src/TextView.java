@@ -1,3 +1,4 @@
+import java.util.List;
 /**
  * The TextView of the Connect Four game
  * Outputs and receives input from the user
@@ -41,27 +42,47 @@ public final class TextView
 	}
 	/**
 	 * Ask the user for number of rows.
-	 * @return int value representing the number of rows
 	 */
-	public final int askForRows() {
+	public final void displayRowsPrompt() {
 		System.out.print("New number of rows: ");
-		return InputUtil.readIntFromUser();
 	}
 	/**
 	 * Ask the user for number of columns.
-	 * @return int value representing the number of columns
 	 */
-	public final int askForColumns() {
+	public final void displayColumnsPrompt() {
 		System.out.print("New number of columns: ");
-		return InputUtil.readIntFromUser();
 	}
 	/**
 	 * Ask the user for number of pieces to connect for a win.
-	 * @return int value representing the number of pieces to connect for a win
 	 */
-	public final int askForWinCondition() {
+	public final void displayWinConditionPrompt() {
 		System.out.print("New number of pieces to connect: ");
-		return InputUtil.readIntFromUser();
+	}
+	/**
+	 * Ask the user for the time on each clock.
+	 */
+	public final void displayClockMinutesPrompt() {
+		System.out.print("Minutes on each player's clock (0 for no clock): ");
+	}
+	/**
+	 * Ask the user for the time added to a clock after each move.
+	 */
+	public final void displayClockIncrementPrompt() {
+		System.out.print("Seconds added after each move: ");
+	}
+	/**
+	 * Displays a message notifying the user that the clock settings they entered are invalid.
+	 */
+	public final void displayClockSettingsInvalid() {
+		System.out.println("The time on the clock cannot be negative, please try again.");
+	}
+	/**
+	 * Displays the time each player has left.
+	 * @param clock an object of class GameClock containing the clocks of the game
+	 */
+	public final void displayClock(GameClock clock) {
+		System.out.printf("[CLOCK: Player 1 %s | Player 2 %s]\n", formatTime(clock.getRemainingMillis(Model.PLAYER_1)),
+				formatTime(clock.getRemainingMillis(Model.PLAYER_2)));
 	}
 	/**
 	 * Display message announcing new game has started.
@@ -82,12 +103,10 @@ public final class TextView
 	/**
 	 * Asks the user for a move.
 	 * @param model an object of class Model containing the state of the game
-	 * @return int value representing the user move
 	 */
-	public final int askForMove(Model model) {
+	public final void displayMovePrompt(Model model) {
 		int player = model.getPlayer();
 		System.out.printf("Player %s: ",player);
-		return InputUtil.readIntFromUser();
 	}
 	/**
 	 * Tells the user their move was invalid and to try again.
@@ -107,19 +126,18 @@ public final class TextView
 	/**
 	 * Asks for a command from the user.
 	 * @param model an object of class Model containing the state of the game
-	 * @return int value representing the user command
 	 */
-	public final int askForCommand(Model model) {
+	public final void displayCommandPrompt(Model model) {
 		int player = model.getPlayer();
 		System.out.printf("Player %s : ", player);
-		return InputUtil.readIntFromUser();
 	}
 	/**
 	 * Display command is not valid.
 	 * @param command int value representing the command the user gave
+	 * @param maxCommand int value representing the highest valid command
 	 */
-	public final void displayCommandInvalid(int command) {
-		System.out.printf("%s is not a valid command, please enter a command between 0 and 3.\n", command);
+	public final void displayCommandInvalid(int command, int maxCommand) {
+		System.out.printf("%s is not a valid command, please enter a command between 0 and %s.\n", command, maxCommand);
 	}
 	/**
 	 * show the move the NPC made
@@ -133,9 +151,15 @@ public final class TextView
 	 * @param model an object of class Model containing the state of the game
 	 */
 	public final void displayBoard(Model model)	{
-		int nrRows = model.getNrRows();
-		int nrCols = model.getNrCols();
-		int[][] board = model.getBoard();
+		displayBoard(model.getSnapshot());
+	}
+	/**
+	 * Displays the board of a snapshot, which may be taken on another thread.
+	 * @param snapshot a PositionSnapshot of the game
+	 */
+	public final void displayBoard(PositionSnapshot snapshot) {
+		int nrRows = snapshot.getNrRows();
+		int nrCols = snapshot.getNrCols();
 		StringBuilder sb = new StringBuilder();
 		for(int i = 0; i < nrCols; i++) {
 			sb.append(" [").append(i + 1).append(']');
@@ -146,7 +170,7 @@ public final class TextView
 			sb.append(rowDivider);
 			sb.append('\n');
 			for (int j = 0; j<nrCols ; j++) {
-				sb.append("| ").append(board[i][j]).append(' ');
+				sb.append("| ").append(snapshot.getPiece(i, j)).append(' ');
 			}
 			sb.append('|');
 			sb.append('\n');
@@ -175,6 +199,21 @@ public final class TextView
 		}
 		System.out.printf("Player %s has surrendered. Player %s wins!\n", player, otherPlayer);
 	}
+	/**
+	 * Displays that the player to move has run out of time.
+	 * @param model an object of class Model containing the state of the game
+	 */
+	public final void displayTimeoutMessage(Model model) {
+		int player = model.getPlayer();
+		int otherPlayer = player == 1 ? 2 : 1;
+		System.out.printf("Player %s has run out of time. Player %s wins!\n", player, otherPlayer);
+	}
+	/**
+	 * Displays that a finished game could not be added to the archive.
+	 */
+	public final void displayArchiveError() {
+		System.out.println("The game could not be added to the archive.");
+	}
 	/**
 	 * Displays board is full
 	 */
@@ -182,11 +221,69 @@ public final class TextView
 		System.out.println("The board is now full, there are no more valid moves to be made, it is a draw.");
 	}
 	/**
-	 * Asks for a new move from user
-	 * @return int value representing the new user move
+	 * Asks the user whether to start a new game
+	 */
+	public final void displayNewGamePrompt() {
+		System.out.println("Enter 0 to start a new game, 1 to analyse this game or any other integer to quit:");
+	}
+	/**
+	 * Displays that a game cannot be analysed because its moves are not known.
+	 */
+	public final void displayNoMoveHistory() {
+		System.out.println("This game was saved without its moves, so it cannot be analysed.");
+	}
+	/**
+	 * Displays that a game cannot be analysed because its moves do not replay onto the saved board.
+	 */
+	public final void displayHistoryMismatch() {
+		System.out.println("The saved moves do not match the board, so this game cannot be analysed.");
+	}
+	/**
+	 * Displays the review of one move as soon as it is ready.
+	 * @param report a PlyReport containing the review of the move
 	 */
-	public final int askForNewGame() {
-		System.out.println("Enter 0 to start a new game or any other integer to quit:");
-		return InputUtil.readIntFromUser();
+	public final void displayPlyReport(GameAnalyzer.PlyReport report) {
+		String[] verdicts = {"good", "inaccuracy", "BLUNDER", "MISSED WIN", "LOSING MOVE"};
+		System.out.printf("Move %d, player %d played %d (%s): %s", report.getPly(), report.getPlayer(),
+				report.getPlayed()+1, formatScore(report.getPlayedScore()), verdicts[report.getVerdict()]);
+		if (report.getVerdict() != GameAnalyzer.GOOD) {
+			System.out.printf(", best was %d (%s)", report.getBest()+1, formatScore(report.getBestScore()));
+		}
+		System.out.println();
+	}
+	/**
+	 * Displays the mistakes of each player in a finished analysis.
+	 * @param reports List of PlyReport values, one per ply in the order they were played
+	 */
+	public final void displayAnalysisSummary(List<GameAnalyzer.PlyReport> reports) {
+		System.out.println("---- ANALYSIS ----");
+		for (GameAnalyzer.PlyReport report : reports) {
+			if (report.getVerdict() != GameAnalyzer.GOOD && report.getVerdict() != GameAnalyzer.INACCURACY) {
+				displayPlyReport(report);
+			}
+		}
+		System.out.printf("%d moves analysed.\n", reports.size());
+	}
+	/**
+	 * Formats a time as minutes, seconds and tenths of a second.
+	 * @param millis long value representing the time in milliseconds
+	 * @return String value representing the time
+	 */
+	private String formatTime(long millis) {
+		long tenths = millis / 100;
+		return String.format("%d:%02d.%d", tenths / 600, tenths % 600 / 10, tenths % 10);
+	}
+	/**
+	 * Formats a search score, showing forced wins and losses in words.
+	 * @param score int value representing the search score
+	 * @return String value representing the score
+	 */
+	private String formatScore(int score) {
+		if (GameAnalyzer.isWin(score)) {
+			return "wins";
+		} else if (GameAnalyzer.isLoss(score)) {
+			return "loses";
+		}
+		return String.format("%+d", score);
 	}
 }
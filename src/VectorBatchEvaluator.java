@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.Random;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+/**
+ * Scores a BatchEvaluator batch with the Vector API, one SIMD lane per board.
+ * The boards that do not fill a whole vector are scored by the scalar code.
+ * The Vector API is an incubator module, so this class has to be compiled and run with
+ * --add-modules jdk.incubator.vector (JDK 16 or newer). The rest of the game does not need it.
+ * Running the class compares its throughput and results with the scalar evaluators.
+ * Usage: java --add-modules jdk.incubator.vector VectorBatchEvaluator [boards] [rows columns winCon]
+ *
+ * @author s1808795
+ */
+public final class VectorBatchEvaluator
+{
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	// A private constructor prevents other code from instantiating
+	// a class that is meant to be used in a static context.
+	private VectorBatchEvaluator() {}
+
+	/**
+	 * Scores every board in the batch.
+	 * @param batch a BatchEvaluator holding the boards
+	 * @param scores int[] value the score of each board is written to, in the order they were added
+	 */
+	public static void evaluate(BatchEvaluator batch, int[] scores) {
+		int size = batch.getSize();
+		int n = batch.getWinCon();
+		int twoShort = n > 2 ? n - 2 : -1;
+		int[] weights = batch.getWeights();
+		int[][] windows = batch.getWindows();
+		int[][] own = batch.getOwn();
+		int[][] other = batch.getOther();
+		int bound = SPECIES.loopBound(size);
+		for (int b = 0; b < bound; b += SPECIES.length()) {
+			IntVector total = IntVector.zero(SPECIES);
+			for (int[] window : windows) {
+				IntVector o = IntVector.zero(SPECIES);
+				IntVector t = IntVector.zero(SPECIES);
+				for (int cell : window) {
+					o = o.add(IntVector.fromArray(SPECIES, own[cell], b));
+					t = t.add(IntVector.fromArray(SPECIES, other[cell], b));
+				}
+				VectorMask<Integer> noOwn = o.eq(0);
+				VectorMask<Integer> noOther = t.eq(0);
+				total = total.add(weights[NPC.CONNECTED], o.eq(n))
+						.add(weights[NPC.ONE_SHORT], o.eq(n - 1).and(noOther))
+						.add(weights[NPC.TWO_SHORT], o.eq(twoShort).and(noOther))
+						.add(weights[NPC.OTHER_ONE_SHORT], t.eq(n - 1).and(noOwn))
+						.add(weights[NPC.OTHER_TWO_SHORT], t.eq(twoShort).and(noOwn));
+			}
+			total.intoArray(scores, b);
+		}
+		Arrays.fill(scores, bound, size, 0);
+		batch.evaluateRange(scores, bound, size);
+	}
+	// ==============================================================================
+	// ================================ BENCHMARK ===================================
+	// ==============================================================================
+	/**
+	 * Scores random boards with NPC.evaluateBoard, the scalar batch and the vector batch,
+	 * checks that the scores are identical and prints the boards scored per second.
+	 * @param args optional number of boards followed by the optional game settings
+	 */
+	public static void main(String[] args) {
+		int nrBoards = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 16;
+		int nrRows = args.length > 3 ? Integer.parseInt(args[1]) : Model.DEFAULT_NR_ROWS;
+		int nrCols = args.length > 3 ? Integer.parseInt(args[2]) : Model.DEFAULT_NR_COLS;
+		int winCon = args.length > 3 ? Integer.parseInt(args[3]) : Model.DEFAULT_WIN_CON;
+		int[] weights = NPC.loadWeights(NPC.WEIGHTS_FILE);
+		NPC npc = new NPC(NPC.NPC_PLAYER, weights);
+		BatchEvaluator batch = new BatchEvaluator(nrRows, nrCols, winCon, NPC.NPC_PLAYER, weights, nrBoards);
+		int[][][] boards = new int[nrBoards][nrRows][nrCols];
+		Random random = new Random(0);
+		for (int[][] board : boards) {
+			for (int j = 0; j < nrCols; j++) {
+				for (int i = nrRows - 1 - random.nextInt(nrRows + 1); i < nrRows; i++) {
+					if (i >= 0) {
+						board[i][j] = 1 + random.nextInt(2);
+					}
+				}
+			}
+			batch.add(board);
+		}
+		int[] expected = new int[nrBoards];
+		int[] scalar = new int[nrBoards];
+		int[] vector = new int[nrBoards];
+		System.out.printf("Scoring %d boards of %d * %d, connect %d, %d lanes per vector\n",
+				nrBoards, nrRows, nrCols, winCon, SPECIES.length());
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			for (int b = 0; b < nrBoards; b++) {
+				expected[b] = npc.evaluateBoard(nrRows, nrCols, boards[b], winCon);
+			}
+			long mid = System.nanoTime();
+			batch.evaluate(scalar);
+			long end = System.nanoTime();
+			evaluate(batch, vector);
+			long last = System.nanoTime();
+			System.out.printf("evaluateBoard %.1f M/s, scalar batch %.1f M/s, vector batch %.1f M/s\n",
+					nrBoards * 1e3 / (mid - start), nrBoards * 1e3 / (end - mid), nrBoards * 1e3 / (last - end));
+		}
+		boolean identical = Arrays.equals(expected, scalar) && Arrays.equals(expected, vector);
+		System.out.println(identical ? "All scores are identical." : "Scores differ!");
+	}
+}
@@ -0,0 +1,335 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+/**
+ * Tunes the evaluation weights of the NPC.
+ * Labels positions from self-play games with the final result and fits the
+ * weights with Texel-style logistic regression. The error over all positions is
+ * computed in parallel, so the tuning uses every core.
+ * Won positions are left out of the training set, so the CONNECTED feature never occurs
+ * there and its weight is not tuned; it keeps the value it starts with.
+ * Usage: java WeightTuner [games] [rows] [columns] [winCon]
+ *        java WeightTuner dataset-file
+ *
+ * @author s1808795
+ */
+public final class WeightTuner
+{
+	// ===========================================================================
+	// ================================ CONSTANTS ================================
+	// ===========================================================================
+	public static final int DEFAULT_NR_GAMES = 20000;
+	public static final double RANDOM_MOVE_CHANCE = 0.3;
+	public static final int LOSS = 0;
+	public static final int DRAW = 1;
+	public static final int WIN = 2;
+	// ========================================================================
+	// ================================ FIELDS ================================
+	// ========================================================================
+	private final int[] features;
+	private final int[] results;
+	private final int nrPositions;
+
+	// =============================================================================
+	// ================================ CONSTRUCTOR ================================
+	// =============================================================================
+	/**
+	 * Constructor
+	 * @param features int[] value representing NR_FEATURES feature counts per position, one position after another
+	 * @param results int[] value representing the result of the game each position came from for the NPC player
+	 */
+	public WeightTuner(int[] features, int[] results) {
+		this.features = features;
+		this.results = results;
+		this.nrPositions = results.length;
+	}
+	// ==============================================================================
+	// ================================ MAIN PROGRAM ================================
+	// ==============================================================================
+	/**
+	 * Generates self-play positions, tunes the weights and writes them to the weights file.
+	 * @param args optional number of games followed by the optional game settings
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 1 && !args[0].matches("\\d+")) {
+			int[] start = NPC.loadWeights(NPC.WEIGHTS_FILE);
+			WeightTuner tuner = fromDataset(PositionDataset.open(new File(args[0])), start);
+			System.out.printf("Read %d labelled positions from %s.\n", tuner.getNrPositions(), args[0]);
+			run(tuner, start);
+			return;
+		}
+		int nrGames = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NR_GAMES;
+		int nrRows = args.length > 3 ? Integer.parseInt(args[1]) : Model.DEFAULT_NR_ROWS;
+		int nrCols = args.length > 3 ? Integer.parseInt(args[2]) : Model.DEFAULT_NR_COLS;
+		int winCon = args.length > 3 ? Integer.parseInt(args[3]) : Model.DEFAULT_WIN_CON;
+		if (!new Model().areSettingsValid(nrRows, nrCols, winCon)) {
+			System.out.println("Invalid game settings.");
+			return;
+		}
+		int[] start = NPC.loadWeights(NPC.WEIGHTS_FILE);
+		System.out.printf("Playing %d self-play games on %d * %d, connect %d...\n", nrGames, nrRows, nrCols, winCon);
+		WeightTuner tuner = fromSelfPlay(nrGames, nrRows, nrCols, winCon, start);
+		System.out.printf("Collected %d positions.\n", tuner.getNrPositions());
+		run(tuner, start);
+	}
+	/**
+	 * Fits the scale, tunes the weights and writes them to the weights file.
+	 * @param tuner a WeightTuner over the labelled positions
+	 * @param start int[] value representing the weights to start from
+	 */
+	private static void run(WeightTuner tuner, int[] start) {
+		double k = tuner.fitScale(start);
+		System.out.printf("Scale K = %.6f, error = %.6f\n", k, tuner.error(start, k));
+		int[] tuned = tuner.tune(start, k);
+		System.out.printf("Tuned error = %.6f\n", tuner.error(tuned, k));
+		System.out.printf("The CONNECTED weight is not tuned and stays %d.\n", tuned[NPC.CONNECTED]);
+		writeWeights(tuned, NPC.WEIGHTS_FILE);
+	}
+	// ==========================================================================
+	// ================================ SELF-PLAY ===============================
+	// ==========================================================================
+	/**
+	 * Plays self-play games in parallel and labels every position with the result.
+	 * @param nrGames int value representing the number of games to play
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param weights int[] value representing the weights the players use
+	 * @return a WeightTuner over the labelled positions
+	 */
+	public static WeightTuner fromSelfPlay(int nrGames, int nrRows, int nrCols, int winCon, int[] weights) {
+		NPC featureCounter = new NPC(NPC.NPC_PLAYER, weights);
+		List<int[]> positions = IntStream.range(0, nrGames).parallel()
+				.mapToObj(seed -> playGame(seed, nrRows, nrCols, winCon, weights))
+				.collect(ArrayList::new, List::addAll, List::addAll);
+		int[] features = new int[positions.size() * NPC.NR_FEATURES];
+		int[] results = new int[positions.size()];
+		IntStream.range(0, positions.size()).parallel().forEach(p -> {
+			int[] position = positions.get(p);
+			int[][] board = new int[nrRows][nrCols];
+			for (int i = 0; i < nrRows; i++) {
+				System.arraycopy(position, i * nrCols, board[i], 0, nrCols);
+			}
+			int[] counts = featureCounter.countFeatures(nrRows, nrCols, board, winCon);
+			System.arraycopy(counts, 0, features, p * NPC.NR_FEATURES, NPC.NR_FEATURES);
+			results[p] = position[nrRows * nrCols];
+		});
+		return new WeightTuner(features, results);
+	}
+	/**
+	 * Reads the labelled positions of a dataset in parallel, skipping positions without a result.
+	 * Won positions are skipped as well, as in self-play.
+	 * @param dataset a PositionDataset holding the positions
+	 * @param weights int[] value representing the weights the features are counted for
+	 * @return a WeightTuner over the labelled positions
+	 */
+	public static WeightTuner fromDataset(PositionDataset dataset, int[] weights) throws IOException {
+		NPC featureCounter = new NPC(NPC.NPC_PLAYER, weights);
+		NPC otherCounter = new NPC(Model.PLAYER_1 + Model.PLAYER_2 - NPC.NPC_PLAYER, weights);
+		int nrRows = dataset.getNrRows();
+		int nrCols = dataset.getNrCols();
+		int winCon = dataset.getWinCon();
+		List<int[]> parts = dataset.split(Runtime.getRuntime().availableProcessors()).parallelStream()
+				.map(reader -> {
+					int[] part = new int[0];
+					int size = 0;
+					try (reader) {
+						while (reader.next()) {
+							if (reader.getResult() == PositionDataset.RESULT_UNKNOWN) {
+								continue;
+							}
+							if (size + NPC.NR_FEATURES + 1 > part.length) {
+								part = Arrays.copyOf(part, Math.max(1024, part.length * 2));
+							}
+							int[][] board = reader.getBoard();
+							int[] counts = featureCounter.countFeatures(nrRows, nrCols, board, winCon);
+							if (counts[NPC.CONNECTED] > 0
+									|| otherCounter.countFeatures(nrRows, nrCols, board, winCon)[NPC.CONNECTED] > 0) {
+								continue;
+							}
+							System.arraycopy(counts, 0, part, size, NPC.NR_FEATURES);
+							part[size + NPC.NR_FEATURES] = reader.getResult();
+							size += NPC.NR_FEATURES + 1;
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					return Arrays.copyOf(part, size);
+				})
+				.collect(Collectors.toList());
+		int nrPositions = 0;
+		for (int[] part : parts) {
+			nrPositions += part.length / (NPC.NR_FEATURES + 1);
+		}
+		int[] features = new int[nrPositions * NPC.NR_FEATURES];
+		int[] results = new int[nrPositions];
+		int p = 0;
+		for (int[] part : parts) {
+			for (int offset = 0; offset < part.length; offset += NPC.NR_FEATURES + 1, p++) {
+				System.arraycopy(part, offset, features, p * NPC.NR_FEATURES, NPC.NR_FEATURES);
+				results[p] = part[offset + NPC.NR_FEATURES];
+			}
+		}
+		return new WeightTuner(features, results);
+	}
+	/**
+	 * Plays one game between two NPCs that look one move ahead and sometimes play a random move.
+	 * @param seed int value representing the seed of the random moves
+	 * @param nrRows int value representing number of rows
+	 * @param nrCols int value representing number of columns
+	 * @param winCon int value representing the number of pieces to connect for a win
+	 * @param weights int[] value representing the weights the players use
+	 * @return List of int[] values, each a flattened board followed by the result for the NPC player
+	 */
+	public static List<int[]> playGame(int seed, int nrRows, int nrCols, int winCon, int[] weights) {
+		Random random = new Random(seed);
+		Model model = new Model();
+		model.changeGameSettings(nrRows, nrCols, winCon);
+		NPC[] players = {new NPC(Model.PLAYER_1, weights, 1, null), new NPC(Model.PLAYER_2, weights, 1, null)};
+		List<int[]> boards = new ArrayList<>();
+		int winner = 0;
+		while (!model.isGameOver()) {
+			int move;
+			if (random.nextDouble() < RANDOM_MOVE_CHANCE) {
+				do {
+					move = random.nextInt(nrCols);
+				} while (!model.isMoveValid(move));
+			} else {
+				move = players[model.getPlayer() - 1].bestMove(model);
+				if (move == NPC.RESIGN) {
+					model.switchPlayer();
+					winner = model.getPlayer();
+					break;
+				}
+			}
+			model.makeMove(move);
+			// Won positions are left out, their score is decided by the win and not the weights.
+			if (model.isWinConMet()) {
+				winner = model.getPlayer();
+				break;
+			}
+			int[] position = new int[nrRows * nrCols + 1];
+			int[][] board = model.getBoard();
+			for (int i = 0; i < nrRows; i++) {
+				System.arraycopy(board[i], 0, position, i * nrCols, nrCols);
+			}
+			boards.add(position);
+			model.switchPlayer();
+		}
+		int result = winner == 0 ? DRAW : winner == NPC.NPC_PLAYER ? WIN : LOSS;
+		for (int[] position : boards) {
+			position[nrRows * nrCols] = result;
+		}
+		return boards;
+	}
+	// ===========================================================================
+	// ================================ TUNING ===================================
+	// ===========================================================================
+	/**
+	 * Finds the scale that maps board scores to win probabilities best.
+	 * @param weights int[] value representing the weights to evaluate with
+	 * @return double value representing the scale K of the sigmoid
+	 */
+	public double fitScale(int[] weights) {
+		double best = 0.01;
+		double bestError = error(weights, best);
+		for (double step = 0.01; step > 1e-6; step /= 10) {
+			boolean improved = true;
+			while (improved) {
+				improved = false;
+				for (double k : new double[] {best - step, best + step}) {
+					if (k <= 0) {
+						continue;
+					}
+					double e = error(weights, k);
+					if (e < bestError) {
+						bestError = e;
+						best = k;
+						improved = true;
+					}
+				}
+			}
+		}
+		return best;
+	}
+	/**
+	 * Improves the weights with a local search that changes one weight at a time.
+	 * The step size is halved whenever no single change lowers the error.
+	 * The CONNECTED weight is left as it is, as no training position has the feature.
+	 * @param start int[] value representing the weights to start from
+	 * @param k double value representing the scale of the sigmoid
+	 * @return int[] value representing the tuned weights
+	 */
+	public int[] tune(int[] start, double k) {
+		int[] weights = start.clone();
+		double bestError = error(weights, k);
+		for (int step = 16; step > 0; step /= 2) {
+			boolean improved = true;
+			while (improved) {
+				improved = false;
+				for (int f = 0; f < NPC.NR_FEATURES; f++) {
+					if (f == NPC.CONNECTED) {
+						continue;
+					}
+					for (int delta : new int[] {step, -step}) {
+						weights[f] += delta;
+						double e = error(weights, k);
+						if (e < bestError) {
+							bestError = e;
+							improved = true;
+							break;
+						}
+						weights[f] -= delta;
+					}
+				}
+			}
+			System.out.printf("Step %d: error = %.6f, weights = %s\n", step, bestError, Arrays.toString(weights));
+		}
+		return weights;
+	}
+	/**
+	 * Calculates the mean squared error between the predicted and actual results.
+	 * @param weights int[] value representing the weights to evaluate with
+	 * @param k double value representing the scale of the sigmoid
+	 * @return double value representing the mean squared error over all positions
+	 */
+	public double error(int[] weights, double k) {
+		double sum = IntStream.range(0, nrPositions).parallel().mapToDouble(p -> {
+			int score = 0;
+			for (int f = 0; f < NPC.NR_FEATURES; f++) {
+				score += weights[f] * features[p * NPC.NR_FEATURES + f];
+			}
+			double predicted = 1 / (1 + Math.exp(-k * score));
+			double actual = results[p] / 2.0;
+			return (actual - predicted) * (actual - predicted);
+		}).sum();
+		return sum / nrPositions;
+	}
+	/**
+	 * Writes the weights to a file that the NPC loads at startup.
+	 * @param weights int[] value representing the weights to save
+	 * @param fileName String value representing the name of the weights file
+	 */
+	public static void writeWeights(int[] weights, String fileName) {
+		try (FileWriter myWriter = new FileWriter(fileName)) {
+			for (int weight : weights) {
+				myWriter.write(weight + "\n");
+			}
+			System.out.println("Weights saved to " + fileName + ".");
+		} catch (IOException e) {
+			System.out.println("A problem occurred.");
+			e.printStackTrace();
+		}
+	}
+	// =========================================================================
+	// ================================ GETTERS ================================
+	// =========================================================================
+	public int getNrPositions() {return nrPositions;}
+}